@@ -236,6 +236,16 @@ public class Settings {
     }
 
 
+    /**
+     * Set or override a property.
+     * Intended for use by tools and tests that need to toggle behaviour without a yml file.
+     * @param key the name of the property
+     * @param value the new value
+     */
+    public static void setProperty(String key, Object value) {
+        props.put(key, value);
+    }
+
     /**
      * The base package for the AUT.
      * It helps to identify if a class we are looking at is something we should
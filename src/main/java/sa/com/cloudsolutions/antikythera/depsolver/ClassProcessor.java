@@ -14,8 +14,6 @@ import com.github.javaparser.ast.visitor.Visitable;
 import com.github.javaparser.resolution.UnsolvedSymbolException;
 import com.github.javaparser.resolution.declarations.ResolvedFieldDeclaration;
 import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
-import com.github.javaparser.resolution.declarations.ResolvedTypeDeclaration;
-import com.github.javaparser.resolution.declarations.ResolvedValueDeclaration;
 import com.github.javaparser.resolution.model.SymbolReference;
 import com.github.javaparser.symbolsolver.javaparsermodel.declarations.JavaParserFieldDeclaration;
 import org.slf4j.Logger;
@@ -30,20 +28,18 @@ import com.github.javaparser.ast.body.TypeDeclaration;
 import com.github.javaparser.ast.type.ClassOrInterfaceType;
 import com.github.javaparser.ast.type.Type;
 import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
+import sa.com.cloudsolutions.antikythera.parser.SourceIndex;
 
-import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.AbstractMap;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Class processor will parse a class and track it's dependencies.
@@ -73,9 +69,9 @@ public class ClassProcessor extends AbstractCompiler {
      * The key in this map is the fully qualified class. The values will be the other types it
      * refers to.
      */
-    protected static final Map<String, Set<ClassDependency>> dependencies = new HashMap<>();
+    protected static final Map<String, Set<ClassDependency>> dependencies = new ConcurrentHashMap<>();
 
-    static final Set<String> copied = new HashSet<>();
+    static final Set<String> copied = ConcurrentHashMap.newKeySet();
 
     /**
      * A collection of all imports encountered in a class.
@@ -123,7 +119,7 @@ public class ClassProcessor extends AbstractCompiler {
                     continue;
                 }
                 String targetName = dependency.getTo();
-                if (!copied.contains(targetName) && targetName.startsWith(Settings.getBasePackage())) {
+                if (targetName.startsWith(Settings.getBasePackage()) && copied.add(targetName)) {
                     /*
                      * There maybe cyclic dependencies, specially if you have @Entity mappings. Therefor
                      * it's best to make sure that we haven't copied this file already and also to make
@@ -131,7 +127,6 @@ public class ClassProcessor extends AbstractCompiler {
                      */
 
                     try {
-                        copied.add(targetName);
                         DTOHandler handler = new DTOHandler();
                         handler.copyDTO(classToPath(targetName));
 
@@ -310,21 +305,9 @@ public class ClassProcessor extends AbstractCompiler {
      * @param packageName the package name
      */
     protected void findClassInPackage(String packageName) {
-        Path p = Paths.get(Settings.getBasePath(), packageName.replace(".", "/"));
-        File directory = p.toFile();
-
-        if (directory.exists() && directory.isDirectory()) {
-            File[] files = directory.listFiles();
-            if (files != null) {
-                for (File f : files) {
-                    String fname = f.getName();
-                    if (fname.endsWith(AbstractCompiler.SUFFIX)) {
-                        String imp = packageName + "." + fname.substring(0, fname.length() - 5);
-                        ImportDeclaration importDeclaration = new ImportDeclaration(imp, false, false);
-                        allImports.add(importDeclaration);
-                    }
-                }
-            }
+        for (String imp : SourceIndex.findClassesInPackage(packageName)) {
+            ImportDeclaration importDeclaration = new ImportDeclaration(imp, false, false);
+            allImports.add(importDeclaration);
         }
     }
 
@@ -357,15 +340,15 @@ public class ClassProcessor extends AbstractCompiler {
                     if (init != null) {
                         if (init.isFieldAccessExpr()) {
                             FieldAccessExpr fae = init.asFieldAccessExpr();
-                            ResolvedValueDeclaration rfd = fae.resolve();
-                            addEdge(from.getFullyQualifiedName().orElse(null), new ClassDependency(from, rfd.getType().describe()));
+                            String type = resolveSymbols(() -> fae.resolve().getType().describe());
+                            addEdge(from.getFullyQualifiedName().orElse(null), new ClassDependency(from, type));
 
                         }
                         else if (!init.isConditionalExpr() && !init.isEnclosedExpr() && !init.isCastExpr() &&
                                 !init.isMethodCallExpr() && !init.isLiteralExpr()) {
-                            JavaParserFieldDeclaration fieldDeclaration = symbolResolver.resolveDeclaration(init, JavaParserFieldDeclaration.class);
-                            ResolvedTypeDeclaration declaringType = fieldDeclaration.declaringType();
-                            addEdge(from.getFullyQualifiedName().orElse(null), new ClassDependency(from, declaringType.getQualifiedName()));
+                            String declaringType = resolveSymbols(() -> symbolResolver
+                                    .resolveDeclaration(init, JavaParserFieldDeclaration.class).declaringType().getQualifiedName());
+                            addEdge(from.getFullyQualifiedName().orElse(null), new ClassDependency(from, declaringType));
                             return true;
                         }
                     }
@@ -375,7 +358,7 @@ public class ClassProcessor extends AbstractCompiler {
                 }
                 return false;
             }
-            String description = typeArg.resolve().describe();
+            String description = resolveSymbols(() -> typeArg.resolve().describe());
             if (!description.startsWith("java.")) {
                 ClassDependency dependency = new ClassDependency(from, description);
                 for (var jarSolver : jarSolvers) {
@@ -398,7 +381,7 @@ public class ClassProcessor extends AbstractCompiler {
     }
 
     protected void addEdge(String fromName, ClassDependency dependency) {
-        dependencies.computeIfAbsent(fromName, k -> new HashSet<>()).add(dependency);
+        dependencies.computeIfAbsent(fromName, k -> ConcurrentHashMap.newKeySet()).add(dependency);
     }
 
     /**
@@ -453,7 +453,7 @@ public class DTOHandler extends ClassProcessor {
                 case "BigDecimal" -> isArray ? "new BigDecimal[] {BigDecimal.ZERO, BigDecimal.ONE}" : "BigDecimal.ZERO";
                 case "EnumSet", "Class" -> { yield null; }
                 default -> {
-                    if (!field.resolve().getType().asReferenceType().getTypeDeclaration().get().isEnum()) {
+                    if (!resolveSymbols(() -> field.resolve().getType().asReferenceType().getTypeDeclaration().get().isEnum())) {
                         yield isArray ? "new " + type + "[] {}" : "new " + type + "()";
                     } else {
                         yield null;
@@ -6,14 +6,37 @@ import com.github.javaparser.ast.body.TypeDeclaration;
 import com.github.javaparser.ast.type.ClassOrInterfaceType;
 import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
 import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
+import sa.com.cloudsolutions.antikythera.parser.HeaderScanner;
+import sa.com.cloudsolutions.antikythera.parser.SourceIndex;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Builds the relation between interfaces and classes that implement them.
  */
 public class InterfaceSolver extends AbstractCompiler {
+    /**
+     * The interface to implementation edges that were discovered in this compilation unit.
+     */
+    private final Map<String, Set<String>> implementations = new HashMap<>();
+    /**
+     * The parent to child class edges that were discovered in this compilation unit.
+     */
+    private final Map<String, Set<String>> parents = new HashMap<>();
+    /**
+     * Other classes whose source had to be looked at to work out the edges. This includes the
+     * interfaces that could not be found, adding a source file for one of them changes the edges.
+     */
+    private final Set<String> consulted = new HashSet<>();
+    /**
+     * Header only compilation units, when available.
+     */
+    private Map<String, CompilationUnit> headers;
 
     /**
      * Constructs an InterfaceSolver instance and initializes the superclass.
@@ -31,11 +54,31 @@ public class InterfaceSolver extends AbstractCompiler {
      * @return true if the compilation has been already been done. (We are finding interface
      *      implementation for the cached result)
      * @throws FileNotFoundException if the source file is not found.
+     * @throws IOException if the source file cannot be read.
      */
     @Override
-    public boolean compile(String relativePath) throws FileNotFoundException {
+    public boolean compile(String relativePath) throws IOException {
         boolean b = super.compile(relativePath);
+        solve();
+        return b;
+    }
 
+    /**
+     * Builds the interface relations using compilation units that only contain the type headers.
+     *
+     * @param header the compilation unit produced by the header scanner for the file of interest
+     * @param headers the header compilation units of all the other files, keyed by class name.
+     *                Interfaces are looked up here and the full compilation units of other
+     *                classes are never loaded.
+     * @throws IOException if the header of an interface cannot be read
+     */
+    public void solve(CompilationUnit header, Map<String, CompilationUnit> headers) throws IOException {
+        this.cu = header;
+        this.headers = headers;
+        solve();
+    }
+
+    private void solve() throws IOException {
         for (TypeDeclaration<?> t : cu.getTypes()) {
             if (t.isClassOrInterfaceDeclaration() && t.getFullyQualifiedName().isPresent()) {
                 ClassOrInterfaceDeclaration cdecl = t.asClassOrInterfaceDeclaration();
@@ -45,21 +88,49 @@ public class InterfaceSolver extends AbstractCompiler {
                 solveExtends(t, cdecl);
             }
         }
-        return b;
+    }
+
+    /**
+     * Find the fully qualified name of a type named in a compilation unit.
+     * In the header only pass the name is worked out without loading other compilation units.
+     */
+    private String resolve(CompilationUnit unit, String name) {
+        return headers == null
+                ? AbstractCompiler.findFullyQualifiedName(unit, name)
+                : AbstractCompiler.findHeaderName(unit, name);
+    }
+
+    /**
+     * Find the compilation unit with the declaration of an interface.
+     * In the header only pass, an interface that was not scanned with the other files (because it
+     * was restored from the cache) has its header scanned now rather than being parsed in full.
+     */
+    private CompilationUnit findInterface(String interfaceName) throws IOException {
+        if (headers == null) {
+            return AntikytheraRunTime.getCompilationUnit(interfaceName);
+        }
+        CompilationUnit header = headers.get(interfaceName);
+        if (header == null && SourceIndex.exists(classToPath(interfaceName))) {
+            header = HeaderScanner.scan(classToPath(interfaceName)).orElse(null);
+            if (header != null) {
+                headers.putIfAbsent(interfaceName, header);
+            }
+        }
+        return header != null ? header : AntikytheraRunTime.getCompilationUnit(interfaceName);
     }
 
     private void solveExtends(TypeDeclaration<?> t, ClassOrInterfaceDeclaration cdecl) {
         for (ClassOrInterfaceType parent : cdecl.getExtendedTypes()) {
-            String parentName = AbstractCompiler.findFullyQualifiedName(cu, parent.getNameAsString());
+            String parentName = resolve(cu, parent.getNameAsString());
             if (parentName != null) {
-                AntikytheraRunTime.addSubClass(parentName, t.getFullyQualifiedName().get());
+                addSubClass(parentName, t.getFullyQualifiedName().get());
             }
         }
     }
 
-    private void solveInterfaces(TypeDeclaration<?> t, ClassOrInterfaceDeclaration cdecl) {
+    private void solveInterfaces(TypeDeclaration<?> t, ClassOrInterfaceDeclaration cdecl) throws IOException {
         for (ClassOrInterfaceType iface : cdecl.getImplementedTypes()) {
-            String interfaceName = AbstractCompiler.findFullyQualifiedName(cu, iface.getNameAsString());
+            String interfaceName = resolve(cu, iface.getNameAsString());
             if (interfaceName != null) {
                 /*
                  * The interfaceName variable represents an interface that has been implemented by the
@@ -67,20 +138,21 @@ public class InterfaceSolver extends AbstractCompiler {
                  * cdecl is an implementation of the interface. Thus when ever @Autowired is encountered
                  * we can make use of one of the implementing classes.
                  */
-                AntikytheraRunTime.addImplementation(interfaceName, t.getFullyQualifiedName().get());
+                addImplementation(interfaceName, t.getFullyQualifiedName().get());
                 /*
                  * Some interfaces have their own parent interface and this class will have to be
                  * identified as an implement of that parent as well.
                  */
-                CompilationUnit interfaceCu = AntikytheraRunTime.getCompilationUnit(interfaceName);
+                consulted.add(interfaceName);
+                CompilationUnit interfaceCu = findInterface(interfaceName);
                 if (interfaceCu != null) {
                     for (TypeDeclaration<?> ifaceType : interfaceCu.getTypes()) {
                         if (ifaceType.isClassOrInterfaceDeclaration()) {
                             ClassOrInterfaceDeclaration ifaceDecl = ifaceType.asClassOrInterfaceDeclaration();
                             for (ClassOrInterfaceType parent : ifaceDecl.getExtendedTypes()) {
-                                String parentName = AbstractCompiler.findFullyQualifiedName(interfaceCu, parent.getNameAsString());
+                                String parentName = resolve(interfaceCu, parent.getNameAsString());
                                 if (parentName != null) {
-                                    AntikytheraRunTime.addImplementation(parentName, t.getFullyQualifiedName().get());
+                                    addImplementation(parentName, t.getFullyQualifiedName().get());
                                 }
                             }
                         }
@@ -89,4 +161,26 @@ public class InterfaceSolver extends AbstractCompiler {
             }
         }
     }
+
+    private void addSubClass(String parent, String child) {
+        parents.computeIfAbsent(parent, k -> new HashSet<>()).add(child);
+        AntikytheraRunTime.addSubClass(parent, child);
+    }
+
+    private void addImplementation(String iface, String impl) {
+        implementations.computeIfAbsent(iface, k -> new HashSet<>()).add(impl);
+        AntikytheraRunTime.addImplementation(iface, impl);
+    }
+
+    public Map<String, Set<String>> getImplementations() {
+        return implementations;
+    }
+
+    public Map<String, Set<String>> getParents() {
+        return parents;
+    }
+
+    public Set<String> getConsulted() {
+        return consulted;
+    }
 }
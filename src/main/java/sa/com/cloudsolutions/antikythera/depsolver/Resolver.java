@@ -29,6 +29,7 @@ import sa.com.cloudsolutions.antikythera.exception.AntikytheraException;
 import sa.com.cloudsolutions.antikythera.exception.DepsolverException;
 import sa.com.cloudsolutions.antikythera.exception.GeneratorException;
 import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
+import sa.com.cloudsolutions.antikythera.parser.ClassCache;
 import sa.com.cloudsolutions.antikythera.parser.ImportUtils;
 import sa.com.cloudsolutions.antikythera.parser.ImportWrapper;
 import sa.com.cloudsolutions.antikythera.parser.MCEWrapper;
@@ -227,7 +228,7 @@ public class Resolver {
 
     static Optional<Type> getExternalType(NodeWithSimpleName<?> fae, ImportWrapper imp) {
         try {
-            Class<?> c = Class.forName(imp.getNameAsString());
+            Class<?> c = ClassCache.forName(imp.getNameAsString());
             Field f = c.getField(fae.getNameAsString());
             ClassOrInterfaceType ct = new ClassOrInterfaceType(null, f.getType().getTypeName());
             return Optional.of(ct);
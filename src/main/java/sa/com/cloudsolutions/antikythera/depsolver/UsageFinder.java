@@ -11,6 +11,7 @@ import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
 import java.io.File;
 import java.io.IOException;
 import java.util.Map;
+import java.util.function.Supplier;
 
 public class UsageFinder {
 
@@ -19,11 +20,11 @@ public class UsageFinder {
         Settings.loadConfigMap(yamlFile);
         AbstractCompiler.preProcess();
 
-        Map<String, CompilationUnit> resolved = AntikytheraRunTime.getResolvedClasses();
+        Map<String, Supplier<CompilationUnit>> resolved = AntikytheraRunTime.getResolvedClasses();
 
-        for (Map.Entry<String, CompilationUnit> entry : resolved.entrySet()) {
+        for (Map.Entry<String, Supplier<CompilationUnit>> entry : resolved.entrySet()) {
             String cls = entry.getKey();
-            CompilationUnit cu = entry.getValue();
+            CompilationUnit cu = entry.getValue().get();
 
             for(TypeDeclaration<?> t : cu.getTypes() ) {
                 if (t.isClassOrInterfaceDeclaration()) {
@@ -3,111 +3,199 @@ package sa.com.cloudsolutions.antikythera.evaluator;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.TypeDeclaration;
 
-import java.util.Deque;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
  * A very basic Runtime for Antikythera.
  *
- * This class will be used to by the Evaluator to mimic a stack and keep track of
- * all the classes that we have compiled.
+ * This class keeps track of all the classes that we have compiled. The state of an individual
+ * evaluation lives in its ExecutionContext.
  */
 public class AntikytheraRunTime {
     /**
-     * Keeps track of all the classes that we have compiled
+     * Keeps track of all the classes that we have compiled.
+     * Files may be compiled concurrently during pre processing so this needs to be thread safe.
      */
-    private static final Map<String, ClassInfo> resolved = new HashMap<>();
+    private static final Map<String, ClassInfo> resolved = new ConcurrentHashMap<>();
     /**
-     * We are not using a stack data structure here, but a Deque. This is because
-     * Deque is a double-ended queue, which can be used as a stack. It is more
-     * efficient than a Stack in java which is synchronized.
-     *
-     * WHile it's normal practice to also place the return value of a method call into the
-     * stack, we are not doing so in here.
+     * When there is a limit on the number of compilation units that can be held in memory, this
+     * holds them in least recently used order. Compilation units that are evicted will be parsed
+     * again the next time they are needed. Null when all compilation units are kept.
      */
-    protected static final Deque<Variable> stack = new LinkedList<>();
-
+    private static Map<String, CompilationUnit> compilationUnits;
     /**
-     * Stores the interfaces and their implementations.
+     * Incremented whenever the set of compiled classes changes, so that anything derived from
+     * it can tell when it needs to be worked out again.
      */
-    protected static final Map<String, Set<String>> interfaces = new HashMap<>();
-
+    private static final AtomicLong generation = new AtomicLong();
     /**
-     * Stores parent classes as keys and child classes as values.
+     * Stores the interfaces and their implementations.
      */
-    protected static final Map<String, Set<String>> extensions = new HashMap<>();
+    protected static final Map<String, Set<String>> interfaces = new ConcurrentHashMap<>();
 
     /**
-     * Stores the fields that have been autowired.
-     * While there should not be cyclic dependencies the reality is that they do exist in the wild.
-     * Additionally due to the way that transactions work in spring boot, you often find classes
-     * auto wiring themselves.
-     * What this means to us is that setting up the fields will often lead to infinite recursions
-     * and stack overflows. To avoid that lets keep all Autowired instances cached.
+     * Stores parent classes as keys and child classes as values.
      */
-    protected static final Map<String, Variable> autowired = new HashMap<>();
+    protected static final Map<String, Set<String>> extensions = new ConcurrentHashMap<>();
 
     public static CompilationUnit getCompilationUnit(String cls) {
-        ClassInfo info = resolved.get(cls);
+        ClassInfo info = findClassInfo(cls);
         if (info != null) {
             return info.getCu();
         }
         return null;
     }
 
+    /**
+     * Unlike a HashMap a ConcurrentHashMap does not accept null keys, so lookups for classes
+     * whose name could not be determined must be guarded.
+     */
+    private static ClassInfo findClassInfo(String className) {
+        return className == null ? null : resolved.get(className);
+    }
+
     public static void addClass(String className, CompilationUnit cu) {
         ClassInfo classInfo = ClassInfo.factory(className, cu);
         resolved.put(className, classInfo);
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Registers a compilation unit that can be reloaded from source.
+     * If a limit has been placed on the number of compilation units held in memory, it may be
+     * evicted and parsed again later using the source.
+     * @param className the fully qualified name of the class
+     * @param cu the compilation unit that has just been parsed
+     * @param source reloads the compilation unit
+     */
+    public static void addClass(String className, CompilationUnit cu, Supplier<CompilationUnit> source) {
+        ClassInfo classInfo = ClassInfo.factory(className, cu);
+        classInfo.source = source;
+        if (compilationUnits != null) {
+            classInfo.cu = null;
+            compilationUnits.put(className, cu);
+        }
+        resolved.put(className, classInfo);
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Registers a class using a compilation unit that contains only the type declarations.
+     * The flags are worked out from the header and the full compilation unit will be parsed
+     * from the source when it is first needed.
+     * @param className the fully qualified name of the class
+     * @param header the compilation unit with only the type headers
+     * @param source parses the complete compilation unit
+     */
+    public static void addClassHeader(String className, CompilationUnit header, Supplier<CompilationUnit> source) {
+        ClassInfo classInfo = ClassInfo.factory(className, header);
+        classInfo.cu = null;
+        classInfo.source = source;
+        resolved.put(className, classInfo);
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Places a limit on the number of compilation units that are held in memory.
+     * Only classes registered together with a means of reloading them are subject to the limit.
+     * @param limit the maximum number of compilation units to keep or zero for no limit
+     */
+    public static void setCompilationUnitLimit(int limit) {
+        if (limit <= 0) {
+            compilationUnits = null;
+        }
+        else {
+            compilationUnits = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CompilationUnit> eldest) {
+                    return size() > limit;
+                }
+            });
+        }
+    }
+
+    /**
+     * Registers a class for which the compilation unit has not yet been parsed.
+     * @param classInfo class information typically restored from the on disk cache
+     */
+    public static void addClass(ClassInfo classInfo) {
+        resolved.put(classInfo.getClassName(), classInfo);
+        generation.incrementAndGet();
+    }
+
+    public static long getGeneration() {
+        return generation.get();
+    }
+
+    public static ClassInfo getClassInfo(String className) {
+        return findClassInfo(className);
     }
 
     public static boolean isServiceClass(String className) {
-        ClassInfo classInfo = resolved.get(className);
+        ClassInfo classInfo = findClassInfo(className);
         return classInfo != null && classInfo.serviceClass;
     }
 
     public static boolean isControllerClass(String className) {
-        ClassInfo classInfo = resolved.get(className);
+        ClassInfo classInfo = findClassInfo(className);
         return classInfo != null && classInfo.controllerClass;
     }
 
     public static boolean isComponentClass(String className) {
-        ClassInfo classInfo = resolved.get(className);
+        ClassInfo classInfo = findClassInfo(className);
         return classInfo != null && classInfo.componentClass;
     }
 
+    /*
+     * The operand stack and the autowired instances belong to the execution context of the
+     * current thread. These methods are kept for the code that does not have an evaluator at hand.
+     */
+
     public static void reset() {
-        stack.clear();
+        ExecutionContext.current().reset();
     }
 
     public static void push(Variable variable) {
-        stack.push(variable);
+        ExecutionContext.current().push(variable);
     }
 
     public static Variable pop() {
-        return stack.removeLast();
+        return ExecutionContext.current().pop();
     }
 
     public static boolean isEmptyStack() {
-        return stack.isEmpty();
+        return ExecutionContext.current().isEmptyStack();
     }
 
     public static boolean isInterface(String name) {
-        ClassInfo classInfo = resolved.get(name);
+        ClassInfo classInfo = findClassInfo(name);
         return classInfo != null && classInfo.isInterface;
     }
 
     public static boolean isAbstractClass(String name) {
-        ClassInfo classInfo = resolved.get(name);
+        ClassInfo classInfo = findClassInfo(name);
         return classInfo != null && classInfo.abstractClass;
     }
 
-    static class ClassInfo {
+    public static class ClassInfo {
         private String className;
-        private CompilationUnit cu;
+        private volatile CompilationUnit cu;
+        /**
+         * Produces the compilation unit on demand when the class was registered without one.
+         */
+        private Supplier<CompilationUnit> source;
+        /**
+         * The number of execution contexts that have pinned the compilation unit.
+         */
+        private int pins;
         private boolean serviceClass;
         private boolean controllerClass;
         private boolean componentClass;
@@ -144,53 +232,152 @@ public class AntikytheraRunTime {
             return classInfo;
         }
 
+        /**
+         * Creates a class info whose compilation unit will only be parsed when it is first needed.
+         * @param className the fully qualified name of the class
+         * @param source produces the compilation unit
+         * @return a new ClassInfo instance
+         */
+        public static ClassInfo lazy(String className, Supplier<CompilationUnit> source,
+                                     boolean serviceClass, boolean controllerClass, boolean componentClass,
+                                     boolean isInterface, boolean abstractClass) {
+            ClassInfo classInfo = new ClassInfo();
+            classInfo.className = className;
+            classInfo.source = source;
+            classInfo.serviceClass = serviceClass;
+            classInfo.controllerClass = controllerClass;
+            classInfo.componentClass = componentClass;
+            classInfo.isInterface = isInterface;
+            classInfo.abstractClass = abstractClass;
+            return classInfo;
+        }
+
         public String getClassName() {
             return className;
         }
 
         public CompilationUnit getCu() {
+            if (cu != null || source == null) {
+                return cu;
+            }
+            Map<String, CompilationUnit> units = compilationUnits;
+            if (units == null) {
+                synchronized (this) {
+                    if (cu == null) {
+                        cu = source.get();
+                    }
+                    return cu;
+                }
+            }
+            CompilationUnit unit = units.get(className);
+            if (unit == null) {
+                unit = source.get();
+                CompilationUnit existing = units.putIfAbsent(className, unit);
+                if (existing != null) {
+                    unit = existing;
+                }
+            }
+            return unit;
+        }
+
+        /**
+         * Keeps the compilation unit in memory until every pin on it has been released.
+         * @return the compilation unit, which will not be replaced by another instance meanwhile
+         */
+        synchronized CompilationUnit pin() {
+            pins++;
+            if (cu == null) {
+                cu = getCu();
+                Map<String, CompilationUnit> units = compilationUnits;
+                if (units != null) {
+                    units.remove(className);
+                }
+            }
             return cu;
         }
+
+        /**
+         * Releases a pin. Once there are none left the compilation unit is subject to the limit on
+         * the number of compilation units again.
+         */
+        synchronized void unpin() {
+            if (pins > 0 && --pins == 0 && source != null) {
+                Map<String, CompilationUnit> units = compilationUnits;
+                if (units != null && cu != null) {
+                    units.put(className, cu);
+                    cu = null;
+                }
+            }
+        }
+
+        public boolean isServiceClass() {
+            return serviceClass;
+        }
+
+        public boolean isControllerClass() {
+            return controllerClass;
+        }
+
+        public boolean isComponentClass() {
+            return componentClass;
+        }
+
+        public boolean isInterface() {
+            return isInterface;
+        }
+
+        public boolean isAbstractClass() {
+            return abstractClass;
+        }
     }
 
     public static void resetAll() {
-        stack.clear();
+        ExecutionContext.current().reset();
         resolved.clear();
+        generation.incrementAndGet();
+        if (compilationUnits != null) {
+            compilationUnits.clear();
+        }
         interfaces.clear();
         extensions.clear();
     }
 
     public static void addSubClass(String parent, String child) {
-        Set<String> s = extensions.computeIfAbsent(parent, k -> new HashSet<>());
+        Set<String> s = extensions.computeIfAbsent(parent, k -> ConcurrentHashMap.newKeySet());
         s.add(child);
     }
 
     public static Set<String> findSubClasses(String parent) {
-        return extensions.getOrDefault(parent, new HashSet<>());
+        return parent == null ? new HashSet<>() : extensions.getOrDefault(parent, new HashSet<>());
     }
 
     public static void addImplementation(String iface, String impl) {
-        Set<String> s = interfaces.computeIfAbsent(iface, k -> new HashSet<>());
+        Set<String> s = interfaces.computeIfAbsent(iface, k -> ConcurrentHashMap.newKeySet());
         s.add(impl);
     }
 
     public static Set<String> findImplementations(String iface) {
-        return interfaces.getOrDefault(iface, new HashSet<>());
+        return iface == null ? new HashSet<>() : interfaces.getOrDefault(iface, new HashSet<>());
     }
 
     public static void autoWire(String className, Variable variable) {
-        autowired.put(className, variable);
+        ExecutionContext.current().autoWire(className, variable);
     }
 
     public static Variable getAutoWire(String className) {
-        return autowired.get(className);
+        return ExecutionContext.current().getAutoWire(className);
     }
 
-    public static Map<String, CompilationUnit> getResolvedClasses() {
-        // iterate through the resolved map and return the classnames and the compation units as a map
-        Map<String, CompilationUnit> resolvedClasses = new HashMap<>();
+    /**
+     * The compilation units are only parsed when they are asked for, so going through all the
+     * classes does not hold all of them in memory at once.
+     * @return the names of the classes that have been compiled and the means of getting each one's
+     *      compilation unit
+     */
+    public static Map<String, Supplier<CompilationUnit>> getResolvedClasses() {
+        Map<String, Supplier<CompilationUnit>> resolvedClasses = new HashMap<>();
         for (Map.Entry<String, ClassInfo> entry : resolved.entrySet()) {
-            resolvedClasses.put(entry.getKey(), entry.getValue().cu);
+            resolvedClasses.put(entry.getKey(), entry.getValue()::getCu);
         }
         return resolvedClasses;
     }
@@ -0,0 +1,223 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.stmt.IfStmt;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides how many times a method is evaluated while trying to cover its branches.
+ *
+ * Each if statement in the method under test has two branches, the one taken when the condition
+ * is true and the one taken when it is false. The branches that have not been taken yet make up
+ * a work list, ordered so that the branches of the outer conditions come first since taking them
+ * usually opens up the ones nested inside. The evaluator is run again for the branch at the head
+ * of the list and when a branch is still not taken after a couple of attempts we give up on it.
+ *
+ * Exploration stops when the branch_coverage target, a percentage, has been reached, when there
+ * is nothing left to try, when the method has been run max_branch_runs times or after
+ * branch_time_limit milliseconds. The default target is zero, which means that the method is only
+ * evaluated as often as it takes to reach each of its top level statements. The branches that
+ * were not taken are logged at the end.
+ */
+public class BranchScheduler {
+    public static final String BRANCH_COVERAGE = "branch_coverage";
+    public static final String MAX_BRANCH_RUNS = "max_branch_runs";
+    public static final String BRANCH_TIME_LIMIT = "branch_time_limit";
+
+    private static final Logger logger = LoggerFactory.getLogger(BranchScheduler.class);
+
+    /**
+     * The number of runs that are made for a branch before it is considered unreachable.
+     */
+    private static final int ATTEMPTS = 2;
+
+    /**
+     * One of the two ways out of an if statement.
+     * @param statement the if statement
+     * @param state the value of the condition that leads to this branch
+     * @param depth the number of if statements that the statement is nested in
+     */
+    public record Branch(IfStmt statement, boolean state, int depth) {
+        @Override
+        public String toString() {
+            int line = statement.getBegin().map(p -> p.line).orElse(0);
+            return "line " + line + " " + state + ": if (" + statement.getCondition() + ")";
+        }
+    }
+
+    private final MethodDeclaration method;
+    private final Map<IfStmt, Integer> ids = new IdentityHashMap<>();
+    private final List<Branch> branches = new ArrayList<>();
+    /**
+     * The positions in the branches list ordered by priority.
+     */
+    private final List<Integer> worklist = new ArrayList<>();
+    private final BitSet taken = new BitSet();
+    private final BitSet abandoned = new BitSet();
+    private final int[] attempts;
+
+    private final double target;
+    private final int maxRuns;
+    private final long deadline;
+    private int runs;
+
+    /**
+     * Creates a scheduler for the method using the limits in the settings.
+     * @param method the method under test
+     */
+    public BranchScheduler(MethodDeclaration method) {
+        this(method, Settings.getProperty(BRANCH_COVERAGE, Number.class).orElse(0).doubleValue(),
+                Settings.getProperty(MAX_BRANCH_RUNS, Integer.class).orElse(100),
+                Settings.getProperty(BRANCH_TIME_LIMIT, Integer.class).orElse(0));
+    }
+
+    /**
+     * @param method the method under test
+     * @param target the percentage of branches that we would like to cover
+     * @param maxRuns the number of times that the method may be evaluated, zero or less for no limit
+     * @param timeLimit milliseconds that may be spent on the method, zero or less for no limit
+     */
+    public BranchScheduler(MethodDeclaration method, double target, int maxRuns, long timeLimit) {
+        this.method = method;
+        this.target = target;
+        this.maxRuns = maxRuns;
+        this.deadline = timeLimit > 0 ? System.currentTimeMillis() + timeLimit : Long.MAX_VALUE;
+
+        for (IfStmt ifst : method.findAll(IfStmt.class)) {
+            int depth = depth(ifst);
+            ids.put(ifst, branches.size());
+            branches.add(new Branch(ifst, true, depth));
+            branches.add(new Branch(ifst, false, depth));
+        }
+        for (int i = 0; i < branches.size(); i++) {
+            worklist.add(i);
+        }
+        worklist.sort(Comparator.comparingInt((Integer i) -> branches.get(i).depth()).thenComparingInt(i -> i));
+        attempts = new int[branches.size()];
+    }
+
+    private int depth(IfStmt ifst) {
+        int depth = 0;
+        Node n = ifst.getParentNode().orElse(null);
+        while (n != null && n != method) {
+            if (n instanceof IfStmt) {
+                depth++;
+            }
+            n = n.getParentNode().orElse(null);
+        }
+        return depth;
+    }
+
+    /**
+     * Record that a condition has been evaluated.
+     * @param ifst the if statement, statements that do not belong to the method are ignored
+     * @param state the value of the condition
+     */
+    public void taken(IfStmt ifst, boolean state) {
+        Integer id = ids.get(ifst);
+        if (id != null) {
+            taken.set(state ? id : id + 1);
+        }
+    }
+
+    /**
+     * @param ifst the if statement
+     * @param state the value of the condition
+     * @return true if the branch has been taken
+     */
+    public boolean isTaken(IfStmt ifst, boolean state) {
+        Integer id = ids.get(ifst);
+        return id != null && taken.get(state ? id : id + 1);
+    }
+
+    /**
+     * Called after each evaluation of the method.
+     * @param target the branch that the run was made for, null if it was made for some other reason
+     */
+    public void finished(Branch target) {
+        runs++;
+        if (target != null) {
+            Integer id = ids.get(target.statement());
+            if (id != null) {
+                int branch = target.state() ? id : id + 1;
+                if (!taken.get(branch) && ++attempts[branch] >= ATTEMPTS) {
+                    abandoned.set(branch);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if the method may not be evaluated any more
+     */
+    public boolean isOutOfBudget() {
+        return (maxRuns > 0 && runs >= maxRuns) || System.currentTimeMillis() > deadline;
+    }
+
+    /**
+     * Find the branch to go after next.
+     * @return the branch or null if the target has been met or there is nothing left to try
+     */
+    public Branch next() {
+        if (isOutOfBudget() || getCoverage() >= target) {
+            return null;
+        }
+        for (int id : worklist) {
+            if (!taken.get(id) && !abandoned.get(id)) {
+                return branches.get(id);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the percentage of branches that have been taken, 100 for a method without any
+     */
+    public double getCoverage() {
+        return branches.isEmpty() ? 100 : 100.0 * taken.cardinality() / branches.size();
+    }
+
+    public int getRuns() {
+        return runs;
+    }
+
+    /**
+     * @return the branches that have not been taken, in the order of the work list
+     */
+    public List<Branch> getMissed() {
+        List<Branch> missed = new ArrayList<>();
+        for (int id : worklist) {
+            if (!taken.get(id)) {
+                missed.add(branches.get(id));
+            }
+        }
+        return missed;
+    }
+
+    /**
+     * Log the outcome of the exploration.
+     */
+    public void report() {
+        List<Branch> missed = getMissed();
+        logger.info("Took {} of the {} branches of {} in {} runs", branches.size() - missed.size(),
+                branches.size(), method.getNameAsString(), runs);
+        for (Branch b : missed) {
+            int id = ids.get(b.statement());
+            if (abandoned.get(b.state() ? id : id + 1)) {
+                logger.info("Could not reach branch, {}", b);
+            } else {
+                logger.info("Branch not taken, {}", b);
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import com.github.javaparser.ast.stmt.Statement;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The lines of code that have been visited while evaluating a method.
+ *
+ * Lines used to be kept in a map keyed by the hash code of the statement. Working out the hash
+ * code of a statement means going through the whole of its sub tree, and that happened every
+ * time a statement was executed or checked. Worse, two statements with the same text in different
+ * places had the same key, so covering one of them looked like covering both.
+ *
+ * Here each statement is given a number the first time it is seen, based on the identity of the
+ * node, and the colors of the lines are kept in two bit sets indexed by that number. A line that
+ * is in neither set is WHITE.
+ *
+ * The map belongs to an ExecutionContext and is cleared before each method under test is
+ * evaluated.
+ */
+public class CoverageMap {
+    private final Map<Statement, Integer> ids = new IdentityHashMap<>();
+    private final List<LineOfCode> lines = new ArrayList<>();
+    private final BitSet grey = new BitSet();
+    private final BitSet black = new BitSet();
+
+    /**
+     * Find the line of code for a statement.
+     * @param stmt the statement
+     * @return the line of code or null if the statement has not been seen
+     */
+    public LineOfCode get(Statement stmt) {
+        Integer id = ids.get(stmt);
+        return id == null ? null : lines.get(id);
+    }
+
+    /**
+     * Find the line of code for a statement, creating a WHITE one if it has not been seen.
+     * @param stmt the statement
+     * @return the line of code
+     */
+    public LineOfCode add(Statement stmt) {
+        Integer id = ids.get(stmt);
+        if (id != null) {
+            return lines.get(id);
+        }
+        LineOfCode l = new LineOfCode(stmt, this, lines.size());
+        ids.put(stmt, lines.size());
+        lines.add(l);
+        return l;
+    }
+
+    /**
+     * @param stmt the statement
+     * @return true if the statement has been seen
+     */
+    public boolean contains(Statement stmt) {
+        return ids.containsKey(stmt);
+    }
+
+    /**
+     * @param stmt the statement
+     * @return true if the statement has been seen and all of its branches have been traversed
+     */
+    public boolean isBlack(Statement stmt) {
+        Integer id = ids.get(stmt);
+        return id != null && black.get(id);
+    }
+
+    /**
+     * @return all the lines that have been seen in the order in which they were first seen
+     */
+    public List<LineOfCode> getLines() {
+        return Collections.unmodifiableList(lines);
+    }
+
+    /**
+     * @param color one of WHITE, GREY or BLACK
+     * @return the number of lines that have been seen and have that color
+     */
+    public int count(int color) {
+        return switch (color) {
+            case LineOfCode.GREY -> grey.cardinality();
+            case LineOfCode.BLACK -> black.cardinality();
+            default -> lines.size() - grey.cardinality() - black.cardinality();
+        };
+    }
+
+    /**
+     * Forget all the lines, a new method is about to be evaluated.
+     */
+    public void clear() {
+        ids.clear();
+        lines.clear();
+        grey.clear();
+        black.clear();
+    }
+
+    int getColor(int id) {
+        if (black.get(id)) {
+            return LineOfCode.BLACK;
+        }
+        return grey.get(id) ? LineOfCode.GREY : LineOfCode.WHITE;
+    }
+
+    void setColor(int id, int color) {
+        grey.set(id, color == LineOfCode.GREY);
+        black.set(id, color == LineOfCode.BLACK);
+    }
+}
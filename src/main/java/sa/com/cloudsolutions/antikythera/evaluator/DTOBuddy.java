@@ -12,6 +12,8 @@ import net.bytebuddy.description.type.TypeDescription;
 import net.bytebuddy.dynamic.DynamicType;
 import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
 import net.bytebuddy.implementation.FieldAccessor;
+import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
+import sa.com.cloudsolutions.antikythera.parser.ClassCache;
 
 import java.lang.reflect.Method;
 import java.util.Collection;
@@ -34,12 +36,14 @@ public class DTOBuddy {
      */
     public static Object createDynamicDTO(ClassOrInterfaceType dtoType, Object ...constructorArgs)
             throws ReflectiveOperationException {
-        String className = dtoType.resolve().asReferenceType().getQualifiedName();
+        synchronized (AbstractCompiler.RESOLUTION_LOCK) {
+            String className = dtoType.resolve().asReferenceType().getQualifiedName();
 
-        Class<?> clazz = createDynamicDTO(dtoType.resolve().asReferenceType().getDeclaredFields(), className);
-        Object instance = clazz.getDeclaredConstructor().newInstance();
-        setDefaults(dtoType.resolve().asReferenceType().getDeclaredFields(), instance);
-        return instance;
+            Class<?> clazz = createDynamicDTO(dtoType.resolve().asReferenceType().getDeclaredFields(), className);
+            Object instance = clazz.getDeclaredConstructor().newInstance();
+            setDefaults(dtoType.resolve().asReferenceType().getDeclaredFields(), instance);
+            return instance;
+        }
     }
 
     /**
@@ -52,10 +56,12 @@ public class DTOBuddy {
     public static Object createDynamicDTO(ClassOrInterfaceDeclaration dtoType)
             throws ReflectiveOperationException {
         String className = dtoType.getNameAsString();
-        Class<?> clazz = createDynamicDTO(dtoType.resolve().asReferenceType().getDeclaredFields(), className);
-        Object instance = clazz.getDeclaredConstructor().newInstance();
-        setDefaults(dtoType.resolve().asReferenceType().getDeclaredFields(), instance);
-        return instance;
+        synchronized (AbstractCompiler.RESOLUTION_LOCK) {
+            Class<?> clazz = createDynamicDTO(dtoType.resolve().asReferenceType().getDeclaredFields(), className);
+            Object instance = clazz.getDeclaredConstructor().newInstance();
+            setDefaults(dtoType.resolve().asReferenceType().getDeclaredFields(), instance);
+            return instance;
+        }
     }
 
     /**
@@ -67,10 +73,12 @@ public class DTOBuddy {
      * @throws ReflectiveOperationException If an error occurs during reflection operations.
      */
     public static Object createDynamicDTO(String qualifiedName, ResolvedTypeDeclaration dtoType) throws ReflectiveOperationException {
-        Class<?> clazz = createDynamicDTO(dtoType.asReferenceType().getDeclaredFields(), qualifiedName);
-        Object instance = clazz.getDeclaredConstructor().newInstance();
-        setDefaults(dtoType.asReferenceType().getDeclaredFields(), instance);
-        return instance;
+        synchronized (AbstractCompiler.RESOLUTION_LOCK) {
+            Class<?> clazz = createDynamicDTO(dtoType.asReferenceType().getDeclaredFields(), qualifiedName);
+            Object instance = clazz.getDeclaredConstructor().newInstance();
+            setDefaults(dtoType.asReferenceType().getDeclaredFields(), instance);
+            return instance;
+        }
     }
 
     /**
@@ -93,7 +101,7 @@ public class DTOBuddy {
                         Type t = fieldDeclaration.getElementType();
                         String setterName = "set" + Character.toUpperCase(fieldName.charAt(0)) + fieldName.substring(1);
 
-                        Method method = clazz.getMethod(setterName, Class.forName(field.getType().describe()));
+                        Method method = clazz.getMethod(setterName, ClassCache.forName(field.getType().describe()));
                         method.invoke(instance, Long.valueOf("10"));
                     }
                 }
@@ -130,7 +138,7 @@ public class DTOBuddy {
             }
             else {
                 try {
-                    fieldType = TypeDescription.Generic.OfNonGenericType.ForLoadedType.of(Class.forName(field.getType().describe()));
+                    fieldType = TypeDescription.Generic.OfNonGenericType.ForLoadedType.of(ClassCache.forName(field.getType().describe()));
                 } catch (ClassNotFoundException cex) {
                     // This field has a class that's not coming from an external library, but it's only available
                     // as source code. We need to create a dynamic class for it.
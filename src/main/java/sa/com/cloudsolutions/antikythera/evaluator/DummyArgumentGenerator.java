@@ -4,6 +4,8 @@ import com.github.javaparser.ast.body.Parameter;
 import com.github.javaparser.ast.type.Type;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
+import sa.com.cloudsolutions.antikythera.parser.ClassCache;
 
 public class DummyArgumentGenerator extends ArgumentGenerator {
     private static final Logger logger = LoggerFactory.getLogger(DummyArgumentGenerator.class);
@@ -19,7 +21,8 @@ public class DummyArgumentGenerator extends ArgumentGenerator {
              */
             Type t = param.getType();
             if (t.isClassOrInterfaceType()) {
-                String fullClassName = t.asClassOrInterfaceType().resolve().asReferenceType().getQualifiedName();
+                String fullClassName = AbstractCompiler.resolveSymbols(
+                        () -> t.asClassOrInterfaceType().resolve().asReferenceType().getQualifiedName());
                 if (fullClassName.startsWith("java")) {
                     /*
                      * However you can't rule out the possibility that this is a Map or a List or even a
@@ -39,7 +42,7 @@ public class DummyArgumentGenerator extends ArgumentGenerator {
                              */
                             AntikytheraRunTime.push(v);
                         } else {
-                            Class<?> clazz = Class.forName(fullClassName);
+                            Class<?> clazz = ClassCache.forName(fullClassName);
                             Variable v = new Variable(clazz.newInstance());
                             /*
                              * PUsh arguments
@@ -19,6 +19,7 @@ import org.checkerframework.checker.units.qual.N;
 import sa.com.cloudsolutions.antikythera.exception.AUTException;
 import sa.com.cloudsolutions.antikythera.exception.AntikytheraException;
 import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
+import sa.com.cloudsolutions.antikythera.parser.ClassCache;
 import com.github.javaparser.ast.stmt.IfStmt;
 import sa.com.cloudsolutions.antikythera.configuration.Settings;
 import sa.com.cloudsolutions.antikythera.finch.Finch;
@@ -26,6 +27,7 @@ import sa.com.cloudsolutions.antikythera.exception.EvaluatorException;
 
 import sa.com.cloudsolutions.antikythera.exception.GeneratorException;
 import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.DataKey;
 import com.github.javaparser.ast.Node;
 
 import com.github.javaparser.ast.NodeList;
@@ -52,10 +54,15 @@ import java.io.IOException;
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
-import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -68,19 +75,67 @@ import java.util.Optional;
  */
 public class Evaluator {
     private static final Logger logger = LoggerFactory.getLogger(Evaluator.class);
+
+    private static final DataKey<Literal> LITERAL = new DataKey<>() {};
+    private static final Variable NULL_LITERAL = Variable.constant(null, null);
+
+    /**
+     * The parsed value of a literal expression along with the text that it was parsed from.
+     */
+    private record Literal(String text, Variable value) {}
+
+    private static final DataKey<Chain> SCOPE_CHAIN = new DataKey<>() {};
+    private static final DataKey<StaticField> STATIC_FIELD = new DataKey<>() {};
+    private static final DataKey<StaticClass> STATIC_CLASS = new DataKey<>() {};
+
+    /**
+     * The scope chain of an expression.
+     */
+    private record Chain(Expression owner, List<Expression> links) {}
+
+    /**
+     * The value of a static final field of a class that is not part of the application.
+     */
+    private record StaticField(FieldAccessExpr owner, Object value) {}
+
+    /**
+     * The class that a name refers to when it is not a local or a field.
+     */
+    private record StaticClass(NameExpr owner, Class<?> clazz) {}
     /**
      * Local variables.
      *
      * These are specific to a block statement. A block statement may also be an
-     * entire method. The primary key will be the hashcode of the block statement.
+     * entire method. The blocks are compared by identity, JavaParser computes the hash code of
+     * a node from its entire subtree and two blocks with the same code are equal.
+     */
+    private final Map<BlockStmt, Map<String, Variable>> locals ;
+
+    /**
+     * The block statement that encloses each node that variables have been looked up for. Saves
+     * walking up the parents of the same node over and over again.
+     */
+    private final Map<Node, BlockStmt> enclosingBlocks = new IdentityHashMap<>();
+
+    /**
+     * The slot layout that applies to each block that has been seen.
      */
-    private final Map<Integer, Map<String, Variable>> locals ;
+    private final Map<BlockStmt, SlotLayout> layouts = new IdentityHashMap<>();
+
+    /**
+     * The values of the locals that have been given a slot, one array for each method.
+     */
+    private final Map<SlotLayout, Variable[]> frames = new IdentityHashMap<>();
 
     /**
      * The fields that were encountered in the current class.
      */
     protected final Map<String, Variable> fields;
-    static Map<String, Object> finches;
+    /**
+     * The instances of the finch classes, keyed by class name. Loaded once and never changed, so
+     * evaluators on different threads can read it.
+     */
+    private static final Map<String, Object> finches = loadFinches();
 
     /**
      * The fully qualified name of the class for which we created this evaluator.
@@ -106,25 +161,40 @@ public class Evaluator {
 
     private final Deque<TryStmt> catching = new LinkedList<>();
 
-    static {
+    /**
+     * The state of the evaluation run that this evaluator is taking part in.
+     */
+    protected final ExecutionContext context;
+
+    private static Map<String, Object> loadFinches() {
+        Map<String, Object> loaded = new HashMap<>();
         try {
-            Evaluator.finches = new HashMap<>();
             List<String> scouts = (List<String>) Settings.getProperty("finch");
             if(scouts != null) {
                 for(String scout : scouts) {
-                    Map<String, Object> finches = Finch.loadClasses(new File(scout));
-                    Evaluator.finches.putAll(finches);
+                    loaded.putAll(Finch.loadClasses(new File(scout)));
                 }
             }
         } catch (Exception e) {
             logger.warn("Finches could not be loaded {}", e.getMessage());
         }
+        return Collections.unmodifiableMap(loaded);
     }
 
     public Evaluator (String className) {
+        this(className, ExecutionContext.current());
+    }
+
+    /**
+     * Creates an evaluator that takes part in an existing evaluation run.
+     * @param className the name of the class associated with this evaluator
+     * @param context the execution context shared with the evaluator that needed this one
+     */
+    protected Evaluator(String className, ExecutionContext context) {
         this.className = className;
-        cu = AntikytheraRunTime.getCompilationUnit(className);
-        locals = new HashMap<>();
+        this.context = context;
+        cu = context.pin(className);
+        locals = new IdentityHashMap<>();
         fields = new HashMap<>();
     }
 
@@ -158,6 +228,23 @@ public class Evaluator {
      * @throws EvaluatorException if we have done something wrong.
      */
     public Variable evaluateExpression(Expression expr) throws AntikytheraException, ReflectiveOperationException {
+        if (context.isCompilingExpressions()) {
+            return ExpressionCompiler.compile(expr).execute(this);
+        }
+        return walkExpression(expr);
+    }
+
+    /**
+     * Evaluate an expression by walking the tree.
+     *
+     * This is what evaluateExpression does unless expressions are being compiled, the compiled form
+     * of an expression falls back to this method for the kinds of expressions that it does not handle.
+     *
+     * @param expr the expression to evaluate
+     * @return the result as a Variable instance which can be null if the expression is supposed to return null
+     * @throws EvaluatorException if we have done something wrong.
+     */
+    Variable walkExpression(Expression expr) throws AntikytheraException, ReflectiveOperationException {
         if (expr.isNameExpr()) {
             String name = expr.asNameExpr().getNameAsString();
             return getValue(expr, name);
@@ -251,8 +338,7 @@ public class Evaluator {
         UnaryExpr.Operator operator = expr.asUnaryExpr().getOperator();
         if (operator.equals(UnaryExpr.Operator.LOGICAL_COMPLEMENT)) {
             Variable v = evaluateExpression(unaryExpr);
-            v.setValue(!(Boolean)v.getValue());
-            return v;
+            return Variable.of(!(Boolean)v.getValue());
         }
         else if(operator.equals(UnaryExpr.Operator.POSTFIX_INCREMENT)
                 || operator.equals(UnaryExpr.Operator.PREFIX_INCREMENT)) {
@@ -281,11 +367,11 @@ public class Evaluator {
         else if(operator.equals(UnaryExpr.Operator.MINUS)) {
             Variable v = evaluateExpression(unaryExpr);
             if (v.getValue() instanceof Integer n) {
-                v.setValue(-1 * n);
+                return new Variable(-1 * n);
             } else if (v.getValue() instanceof Double d) {
-                v.setValue(-1 * d);
+                return new Variable(-1 * d);
             } else if (v.getValue() instanceof Long l) {
-                v.setValue(-1 * l);
+                return new Variable(-1 * l);
             }
             return v;
         }
@@ -303,12 +389,24 @@ public class Evaluator {
                 CompilationUnit dep = AntikytheraRunTime.getCompilationUnit(fullName);
                 if (dep == null) {
                     /*
-                     * Use class loader
+                     * Use class loader. Constants are only read once.
                      */
-                    Class<?> clazz = Class.forName(fullName);
+                    synchronized (fae) {
+                        if (fae.containsData(STATIC_FIELD) && fae.getData(STATIC_FIELD).owner() == fae) {
+                            return new Variable(fae.getData(STATIC_FIELD).value());
+                        }
+                    }
+                    Class<?> clazz = ClassCache.forName(fullName);
                     Field field = clazz.getDeclaredField(fae.getNameAsString());
                     field.setAccessible(true);
-                    return new Variable(field.get(null));
+                    Object value = field.get(null);
+                    if (Modifier.isStatic(field.getModifiers()) && Modifier.isFinal(field.getModifiers())
+                            && !clazz.equals(System.class)) {
+                        synchronized (fae) {
+                            fae.setData(STATIC_FIELD, new StaticField(fae, value));
+                        }
+                    }
+                    return new Variable(value);
                 } else {
                     TypeDeclaration<?> typeDeclaration = AbstractCompiler.getMatchingType(dep, fae.getScope().toString());
                     if (typeDeclaration != null) {
@@ -339,24 +437,53 @@ public class Evaluator {
         return null;
     }
 
-    private static Variable evaluateLiteral(Expression expr) throws EvaluatorException {
+    /**
+     * Evaluate a literal expression.
+     *
+     * The value of a literal is worked out the first time that it is evaluated and kept in the data
+     * of the node as a constant, so the same variable is returned each time. It is compared with the
+     * text of the literal in case the node has been modified after that.
+     *
+     * @param expr a literal expression
+     * @return a constant variable holding the value of the literal
+     * @throws EvaluatorException if the kind of literal is not supported
+     */
+    static Variable evaluateLiteral(Expression expr) throws EvaluatorException {
+        if (expr instanceof NullLiteralExpr) {
+            return NULL_LITERAL;
+        }
+        String text = expr instanceof LiteralStringValueExpr literal
+                ? literal.getValue()
+                : String.valueOf(expr.asBooleanLiteralExpr().getValue());
+        synchronized (expr) {
+            if (expr.containsData(LITERAL)) {
+                Literal literal = expr.getData(LITERAL);
+                if (literal.text().equals(text)) {
+                    return literal.value();
+                }
+            }
+            Variable v = parseLiteral(expr);
+            expr.setData(LITERAL, new Literal(text, v));
+            return v;
+        }
+    }
+
+    private static Variable parseLiteral(Expression expr) throws EvaluatorException {
         return switch (expr) {
             case BooleanLiteralExpr booleanLiteralExpr ->
-                new Variable(AbstractCompiler.convertLiteralToType(booleanLiteralExpr), booleanLiteralExpr.getValue());
+                Variable.constant(AbstractCompiler.convertLiteralToType(booleanLiteralExpr), booleanLiteralExpr.getValue());
             case DoubleLiteralExpr doubleLiteralExpr ->
-                new Variable(AbstractCompiler.convertLiteralToType(doubleLiteralExpr), Double.parseDouble(doubleLiteralExpr.getValue()));
+                Variable.constant(AbstractCompiler.convertLiteralToType(doubleLiteralExpr), Double.parseDouble(doubleLiteralExpr.getValue()));
             case IntegerLiteralExpr integerLiteralExpr ->
-                new Variable(AbstractCompiler.convertLiteralToType(integerLiteralExpr), Integer.parseInt(integerLiteralExpr.getValue()));
+                Variable.constant(AbstractCompiler.convertLiteralToType(integerLiteralExpr), Integer.parseInt(integerLiteralExpr.getValue()));
             case StringLiteralExpr stringLiteralExpr ->
-                new Variable(AbstractCompiler.convertLiteralToType(stringLiteralExpr), stringLiteralExpr.getValue());
+                Variable.constant(AbstractCompiler.convertLiteralToType(stringLiteralExpr), stringLiteralExpr.getValue());
             case CharLiteralExpr charLiteralExpr ->
-                new Variable(AbstractCompiler.convertLiteralToType(charLiteralExpr), charLiteralExpr.getValue());
+                Variable.constant(AbstractCompiler.convertLiteralToType(charLiteralExpr), charLiteralExpr.getValue());
             case LongLiteralExpr longLiteralExpr -> {
                 String value = longLiteralExpr.getValue();
-                yield new Variable(Long.parseLong(value.endsWith("L") ? value.replaceFirst("L", "") : value));
+                yield Variable.constant(null, Long.parseLong(value.endsWith("L") ? value.replaceFirst("L", "") : value));
             }
-            case NullLiteralExpr nullLiteralExpr ->
-                new Variable(null);
             default -> throw new EvaluatorException("Unknown literal expression %s".formatted(expr));
         };
     }
@@ -396,7 +523,7 @@ public class Evaluator {
         }
         else if(target.isNameExpr()) {
             String name = target.asNameExpr().getNameAsString();
-            setLocal(expr, name, v);
+            setLocal(target, name, v);
         }
 
         return v;
@@ -451,6 +578,7 @@ public class Evaluator {
             MethodCallExpr methodCall = init.asMethodCallExpr();
             v = evaluateMethodCall(methodCall);
             if (v != null) {
+                v = v.modifiable();
                 v.setType(decl.getType());
                 setLocal(decl, decl.getNameAsString(), v);
             }
@@ -458,6 +586,7 @@ public class Evaluator {
         else if(init.isObjectCreationExpr()) {
             v = createObject(init, decl, init.asObjectCreationExpr());
             if (v != null) {
+                v = v.modifiable();
                 v.setType(decl.getType());
                 setLocal(decl, decl.getNameAsString(), v);
             }
@@ -465,6 +594,7 @@ public class Evaluator {
         else {
             v = evaluateExpression(init);
             if (v != null) {
+                v = v.modifiable();
                 v.setType(decl.getType());
                 setLocal(decl, decl.getNameAsString(), v);
             }
@@ -534,6 +664,9 @@ public class Evaluator {
         TypeDeclaration<?> match = AbstractCompiler.resolveTypeSafely(type, oce);
         if (match != null) {
             Evaluator eval = createEvaluator(match.getFullyQualifiedName().get());
+            if (eval.cu != null) {
+                eval.setupFields();
+            }
             annonymousOverrides(type, oce, eval);
             List<ConstructorDeclaration> constructors = match.findAll(ConstructorDeclaration.class);
             if (constructors.isEmpty()) {
@@ -549,7 +682,7 @@ public class Evaluator {
                  */
                 Variable variable = evaluateExpression(oce.getArguments().get(i));
                 argTypes.add(variable.getType());
-                AntikytheraRunTime.push(variable);
+                context.push(variable);
             }
 
             Optional<CallableDeclaration<?>> matchingConstructor =  AbstractCompiler.findConstructorDeclaration(mce, match);
@@ -614,47 +747,43 @@ public class Evaluator {
             }
 
 
-            Class<?> clazz;
-            try {
-                clazz = Class.forName(resolvedClass);
-            } catch (ClassNotFoundException cnf) {
-                clazz = AbstractCompiler.loadClass(resolvedClass);
-            }
+            String name = resolvedClass;
+            Class<?> clazz = ClassCache.findAnywhere(resolvedClass)
+                    .orElseThrow(() -> new ClassNotFoundException(name));
 
             Class<?> outer = clazz.getEnclosingClass();
             if (outer != null) {
-                for (Class<?> c : outer.getDeclaredClasses()) {
-                    if (c.getName().equals(resolvedClass)) {
-                        List<Expression> arguments = oce.getArguments();
-                        Class<?>[] paramTypes = new Class<?>[arguments.size() + 1];
-                        Object[] args = new Object[arguments.size() + 1];
-
-                        // todo this is wrong, this should first check for an existing instance in the current scope
-                        // and then if an instance is not found build using the most suitable arguments.
-                        args[0] = outer.getDeclaredConstructors()[0].newInstance();
-                        paramTypes[0] = outer;
-
-                        for (int i = 0; i < arguments.size(); i++) {
-                            Variable vv = evaluateExpression(arguments.get(i));
-                            Class<?> wrapperClass = vv.getValue().getClass();
-                            paramTypes[i + 1] =wrapperClass;
-                            args[i + 1] = vv.getValue();
-                        }
+                Class<?> c = ReflectionCache.findDeclaredClass(outer, resolvedClass);
+                if (c != null) {
+                    List<Expression> arguments = oce.getArguments();
+                    Class<?>[] paramTypes = new Class<?>[arguments.size() + 1];
+                    Object[] args = new Object[arguments.size() + 1];
+
+                    // todo this is wrong, this should first check for an existing instance in the current scope
+                    // and then if an instance is not found build using the most suitable arguments.
+                    args[0] = outer.getDeclaredConstructors()[0].newInstance();
+                    paramTypes[0] = outer;
+
+                    for (int i = 0; i < arguments.size(); i++) {
+                        Variable vv = evaluateExpression(arguments.get(i));
+                        Class<?> wrapperClass = vv.getValue().getClass();
+                        paramTypes[i + 1] =wrapperClass;
+                        args[i + 1] = vv.getValue();
+                    }
 
-                        Constructor<?> cons = Reflect.findConstructor(c, paramTypes);
-                        if(cons !=  null) {
-                            Object instance = cons.newInstance(args);
-                            return new Variable(type, instance);
-                        }
-                        else {
-                            throw new EvaluatorException("Could not find a constructor for class " + c.getName());
-                        }
+                    ReflectionCache.Creator cons = ReflectionCache.findConstructor(c, paramTypes);
+                    if(cons !=  null) {
+                        Object instance = cons.newInstance(args);
+                        return new Variable(type, instance);
+                    }
+                    else {
+                        throw new EvaluatorException("Could not find a constructor for class " + c.getName());
                     }
                 }
             } else {
                 ReflectionArguments reflectionArguments = Reflect.buildArguments(oce, this);
 
-                Constructor<?> cons = Reflect.findConstructor(clazz, reflectionArguments.getParamTypes());
+                ReflectionCache.Creator cons = ReflectionCache.findConstructor(clazz, reflectionArguments.getParamTypes());
                 if(cons !=  null) {
                     Object instance = cons.newInstance(reflectionArguments.getArgs());
                     return new Variable(type, instance);
@@ -685,12 +814,31 @@ public class Evaluator {
         Variable v = null;
         Node n = node;
 
+        if (node instanceof NameExpr nameExpr) {
+            /*
+             * Most look ups are for name expressions, which have been resolved to a slot ahead of time
+             */
+            BlockStmt block = enclosingBlock(nameExpr);
+            if (block != null) {
+                SlotLayout layout = layoutOf(block);
+                int slot = layout.slotOf(nameExpr);
+                if (slot >= 0) {
+                    return frameOf(layout)[slot];
+                }
+            }
+        }
+
         while (true) {
-            BlockStmt block = findBlockStatement(n);
-            int hash = (block != null) ? block.hashCode() : 0;
-            if (hash == 0) {
-                for(Map.Entry<Integer, Map<String, Variable>> entry : locals.entrySet()) {
-                    v = entry.getValue().get(name);
+            BlockStmt block = enclosingBlock(n);
+            if (block == null) {
+                for(Map<String, Variable> localsVars : locals.values()) {
+                    v = localsVars.get(name);
+                    if (v != null) {
+                        return v;
+                    }
+                }
+                for (Map.Entry<SlotLayout, Variable[]> frame : frames.entrySet()) {
+                    v = frame.getKey().find(frame.getValue(), name);
                     if (v != null) {
                         return v;
                     }
@@ -698,22 +846,11 @@ public class Evaluator {
                 break;
             }
             else {
-                Map<String, Variable> localsVars = this.locals.get(hash);
-
-                if (localsVars != null) {
-                    v = localsVars.get(name);
-                    if (v != null)
-                        return v;
+                v = findInBlock(block, name);
+                if (v != null) {
+                    return v;
                 }
                 if (n instanceof MethodDeclaration) {
-                    localsVars = this.locals.get(hash);
-                    if (localsVars != null) {
-                        v = localsVars.get(name);
-                        return v;
-                    }
-                    break;
-                }
-                if (block == null) {
                     break;
                 }
                 n = block.getParentNode().orElse(null);
@@ -739,12 +876,68 @@ public class Evaluator {
             old.setValue(v.getValue());
         }
         else {
-            BlockStmt block = findBlockStatement(node);
-            int hash = (block != null) ? block.hashCode() : 0;
+            BlockStmt block = enclosingBlock(node);
+            if (block != null) {
+                SlotLayout layout = layoutOf(block);
+                int slot = layout.declaredSlot(block, nameAsString);
+                if (slot >= 0) {
+                    frameOf(layout)[slot] = v.modifiable();
+                    return;
+                }
+            }
+            Map<String, Variable> localVars = this.locals.computeIfAbsent(block, k -> new HashMap<>());
+            localVars.put(nameAsString, v.modifiable());
+        }
+    }
 
-            Map<String, Variable> localVars = this.locals.computeIfAbsent(hash, k -> new HashMap<>());
-            localVars.put(nameAsString, v);
+    /**
+     * Find a variable that has been declared in the given block.
+     * @param block the block statement
+     * @param name the name of the variable
+     * @return the variable or null if the block does not have a variable by that name
+     */
+    private Variable findInBlock(BlockStmt block, String name) {
+        SlotLayout layout = layoutOf(block);
+        int slot = layout.declaredSlot(block, name);
+        if (slot >= 0) {
+            return frameOf(layout)[slot];
+        }
+        Map<String, Variable> localsVars = this.locals.get(block);
+        return localsVars == null ? null : localsVars.get(name);
+    }
+
+    private SlotLayout layoutOf(BlockStmt block) {
+        SlotLayout layout = layouts.get(block);
+        if (layout == null) {
+            layout = SlotLayout.of(block);
+            layouts.put(block, layout);
         }
+        return layout;
+    }
+
+    private Variable[] frameOf(SlotLayout layout) {
+        Variable[] frame = frames.get(layout);
+        if (frame == null) {
+            frame = new Variable[layout.size()];
+            frames.put(layout, frame);
+        }
+        return frame;
+    }
+
+    /**
+     * Find the block statement that contains the node, remembering the answer.
+     * @param node the node to start from
+     * @return the block statement that contains the node or null if there isn't one
+     */
+    private BlockStmt enclosingBlock(Node node) {
+        BlockStmt block = enclosingBlocks.get(node);
+        if (block == null) {
+            block = findBlockStatement(node);
+            if (block != null) {
+                enclosingBlocks.put(node, block);
+            }
+        }
+        return block;
     }
 
     /**
@@ -752,7 +945,7 @@ public class Evaluator {
      * @param expr the expression to start from
      * @return the block statement that contains expr
      */
-    private static BlockStmt findBlockStatement(Node expr) {
+    static BlockStmt findBlockStatement(Node expr) {
         Node currentNode = expr;
         while (currentNode != null) {
             if (currentNode instanceof BlockStmt blockStmt) {
@@ -782,7 +975,7 @@ public class Evaluator {
             return null;
         }
 
-        LinkedList<Expression> chain = findScopeChain(methodCall);
+        List<Expression> chain = scopeChain(methodCall);
 
         if (chain.isEmpty()) {
             return executeLocalMethod(methodCall);
@@ -794,10 +987,9 @@ public class Evaluator {
 
     }
 
-    private Variable evaluateScopeChain(LinkedList<Expression> chain) throws ReflectiveOperationException, AntikytheraException {
+    private Variable evaluateScopeChain(List<Expression> chain) throws ReflectiveOperationException, AntikytheraException {
         Variable variable = null;
-        while(!chain.isEmpty()) {
-            Expression expr2 = chain.pollLast();
+        for (Expression expr2 : chain) {
             if (expr2.isNameExpr()) {
                 variable = resolveExpression(expr2.asNameExpr());
             }
@@ -807,6 +999,9 @@ public class Evaluator {
                  * we will have an evaluator instance as the 'value' in the variable v
                  */
                 if (variable.getClazz().equals(System.class)) {
+                    /*
+                     * Always read these, System.out and friends can be replaced.
+                     */
                     Field field = System.class.getField(expr2.asFieldAccessExpr().getNameAsString());
                     variable = new Variable(field.get(null));
                 }
@@ -884,6 +1079,41 @@ public class Evaluator {
         return chain;
     }
 
+    /**
+     * The scopes of the expression in the order in which they need to be evaluated.
+     *
+     * This is the reverse of what findScopeChain returns. The chain only depends on the structure
+     * of the expression, so it is worked out once and kept in the data of the node. Cloning a node
+     * copies its data, so the chain also keeps a reference to the expression it was made for.
+     *
+     * @param expr a method call, field access or method reference
+     * @return an unmodifiable list of the scopes, innermost first
+     */
+    static List<Expression> scopeChain(Expression expr) {
+        synchronized (expr) {
+            if (expr.containsData(SCOPE_CHAIN)) {
+                Chain chain = expr.getData(SCOPE_CHAIN);
+                if (chain.owner() == expr) {
+                    return chain.links();
+                }
+            }
+            List<Expression> links = new ArrayList<>(findScopeChain(expr));
+            Collections.reverse(links);
+            Chain chain = new Chain(expr, List.copyOf(links));
+            expr.setData(SCOPE_CHAIN, chain);
+            return chain.links();
+        }
+    }
+
+    private static Class<?> staticClass(NameExpr expr) {
+        synchronized (expr) {
+            if (expr.containsData(STATIC_CLASS) && expr.getData(STATIC_CLASS).owner() == expr) {
+                return expr.getData(STATIC_CLASS).clazz();
+            }
+            return null;
+        }
+    }
+
     private Variable resolveExpression(NameExpr expr) {
         if(expr.getNameAsString().equals("System")) {
             Variable variable = new Variable(System.class);
@@ -897,17 +1127,21 @@ public class Evaluator {
                  * We know that we don't have a matching local variable or field. That indicates the
                  * presence of an import, a class from same package or this is part of java.lang package
                  */
-                String fullyQualifiedName = AbstractCompiler.findFullyQualifiedName(cu, expr.getNameAsString());
-                Class<?> clazz = getClass(fullyQualifiedName);
-                if (clazz != null) {
-                    v = new Variable(clazz);
-                    v.setClazz(clazz);
-                }
-                else {
-                    Evaluator eval = createEvaluator(fullyQualifiedName);
-                    eval.setupFields(AntikytheraRunTime.getCompilationUnit(fullyQualifiedName));
-                    v = new Variable(eval);
+                Class<?> clazz = staticClass(expr);
+                if (clazz == null) {
+                    String fullyQualifiedName = AbstractCompiler.findFullyQualifiedName(cu, expr.getNameAsString());
+                    clazz = getClass(fullyQualifiedName);
+                    if (clazz == null) {
+                        Evaluator eval = createEvaluator(fullyQualifiedName);
+                        eval.setupFields(AntikytheraRunTime.getCompilationUnit(fullyQualifiedName));
+                        return new Variable(eval);
+                    }
+                    synchronized (expr) {
+                        expr.setData(STATIC_CLASS, new StaticClass(expr, clazz));
+                    }
                 }
+                v = new Variable(clazz);
+                v.setClazz(clazz);
             }
 
             return v;
@@ -935,7 +1169,7 @@ public class Evaluator {
                         /*
                          * Push method arguments
                          */
-                        AntikytheraRunTime.push(new Variable(reflectionArguments.getArgs()[i]));
+                        context.push(new Variable(reflectionArguments.getArgs()[i]));
                     }
                     return eval.executeMethod(methodCall);
                 }
@@ -951,7 +1185,7 @@ public class Evaluator {
 
     private Variable evaluateMethodReference(Variable v, NodeList<Expression> arguments) throws ReflectiveOperationException, AntikytheraException {
         MethodReferenceExpr rfCall = arguments.get(0).asMethodReferenceExpr();
-        LinkedList<Expression> chain = findScopeChain(rfCall);
+        List<Expression> chain = scopeChain(rfCall);
 
         if (chain.isEmpty()) {
             return null;
@@ -959,10 +1193,10 @@ public class Evaluator {
 
         Variable variable = evaluateScopeChain(chain);
         if (v.getValue() instanceof Collection<?> c) {
-            Method m = Reflect.findMethod(variable.getClazz(), rfCall.getIdentifier(), new Class[]{c.getClass()});
-            if (m != null) {
+            ReflectionCache.Invoker invoker = ReflectionCache.findMethod(variable.getClazz(), rfCall.getIdentifier(), new Class[]{c.getClass()});
+            if (invoker != null) {
                 for(Object o : c) {
-                    m.invoke(variable.getValue(), o);
+                    invoker.invoke(variable.getValue(), new Object[]{o});
                 }
             }
         }
@@ -986,9 +1220,9 @@ public class Evaluator {
         md.addParameter(lambda.getParameter(0));
 
         if (v.getValue() instanceof Collection<?> c) {
-            Evaluator eval = new Evaluator("lambda");
+            Evaluator eval = new Evaluator("lambda", context);
             for (Object o : c) {
-                AntikytheraRunTime.push(new Variable(o));
+                context.push(new Variable(o));
                 eval.executeMethod(md);
             }
         }
@@ -1001,16 +1235,11 @@ public class Evaluator {
         String methodName = reflectionArguments.getMethodName();
         Class<?>[] paramTypes = reflectionArguments.getParamTypes();
         Object[] args = reflectionArguments.getArgs();
-        Method method = Reflect.findMethod(clazz, methodName, paramTypes);
-        if (method != null) {
-            Object[] finalArgs = args;
-            if (method.getParameterTypes().length == 1 && method.getParameterTypes()[0].equals(Object[].class)) {
-                finalArgs = new Object[]{args};
-            }
-
-            returnValue = new Variable(method.invoke(v.getValue(), finalArgs));
+        ReflectionCache.Invoker invoker = ReflectionCache.findMethod(clazz, methodName, paramTypes);
+        if (invoker != null) {
+            returnValue = new Variable(invoker.invoke(v.getValue(), args));
             if (returnValue.getValue() == null && returnValue.getClazz() == null) {
-                returnValue.setClazz(method.getReturnType());
+                returnValue.setClazz(invoker.getMethod().getReturnType());
             }
             return returnValue;
         }
@@ -1113,65 +1342,74 @@ public class Evaluator {
 
 
     static Class<?> getClass(String className) {
-        try {
-            return Class.forName(className);
-        } catch (ClassNotFoundException e) {
+        Optional<Class<?>> clazz = ClassCache.find(className);
+        if (clazz.isEmpty()) {
             logger.info("Could not find class {}", className);
         }
-        return null;
+        return clazz.orElse(null);
     }
 
     Variable evaluateBinaryExpression(BinaryExpr.Operator operator,
                                       Expression leftExpression, Expression rightExpression) throws AntikytheraException, ReflectiveOperationException {
         Variable left = evaluateExpression(leftExpression);
-        left.setInitializer(leftExpression);
 
         if(operator.equals(BinaryExpr.Operator.OR) && (boolean)left.getValue()) {
-             return new Variable(Boolean.TRUE);
+             return Variable.TRUE;
         }
 
         Variable right = evaluateExpression(rightExpression);
-        right.setInitializer(rightExpression);
 
+        return binaryOperation(operator, left, right, leftExpression, rightExpression);
+    }
+
+    /**
+     * Apply a binary operator to operands that have already been evaluated.
+     * @param operator the operator
+     * @param left the left operand
+     * @param right the right operand
+     * @param leftExpression the expression that the left operand came from
+     * @param rightExpression the expression that the right operand came from
+     * @return the result of the operation or null if the operator is not supported
+     * @throws EvaluatorException if the operands cannot be compared
+     */
+    Variable binaryOperation(BinaryExpr.Operator operator, Variable left, Variable right,
+                             Expression leftExpression, Expression rightExpression) throws EvaluatorException {
         switch (operator) {
             case EQUALS:
                 return checkEquality(left, right);
 
             case GREATER:
                 if (left.getValue() instanceof Number && right.getValue() instanceof Number) {
-                    return new Variable(NumericComparator.compare(left.getValue(), right.getValue()) > 0);
+                    return Variable.of(NumericComparator.compare(left.getValue(), right.getValue()) > 0);
                 }
                 throw new EvaluatorException("Cannot compare " + leftExpression + " and " + rightExpression);
 
             case GREATER_EQUALS:
                 if (left.getValue() instanceof Number && right.getValue() instanceof Number) {
-                    return new Variable(NumericComparator.compare(left.getValue(), right.getValue()) >= 0);
+                    return Variable.of(NumericComparator.compare(left.getValue(), right.getValue()) >= 0);
                 }
                 throw new EvaluatorException("Cannot compare " + leftExpression + " and " + rightExpression);
 
             case LESS:
                 if (left.getValue() instanceof Number && right.getValue() instanceof Number) {
-                    return new Variable(NumericComparator.compare(left.getValue(), right.getValue()) < 0);
+                    return Variable.of(NumericComparator.compare(left.getValue(), right.getValue()) < 0);
                 }
                 throw new EvaluatorException("Cannot compare " + leftExpression + " and " + rightExpression);
 
             case LESS_EQUALS:
                 if (left.getValue() instanceof Number && right.getValue() instanceof Number) {
-                    return new Variable(NumericComparator.compare(left.getValue(), right.getValue()) <= 0);
+                    return Variable.of(NumericComparator.compare(left.getValue(), right.getValue()) <= 0);
                 }
                 throw new EvaluatorException("Cannot compare " + leftExpression + " and " + rightExpression);
 
             case NOT_EQUALS:
                 Variable v = checkEquality(left, right);
-                if (v.getValue() == null || Boolean.parseBoolean(v.getValue().toString())) {
-                    return new Variable(Boolean.FALSE);
-                }
-                return new Variable(Boolean.TRUE);
+                return Variable.of(!Boolean.TRUE.equals(v.getValue()));
 
             case OR:
                 if (  (left.getClazz().equals(Boolean.class) || left.getClazz().equals(boolean.class))
                         && (right.getClazz().equals(Boolean.class) || right.getClazz().equals(boolean.class))) {
-                    return new Variable( (Boolean)left.getValue() || (Boolean)right.getValue());
+                    return Variable.of((Boolean)left.getValue() || (Boolean)right.getValue());
                 }
                 return null;
 
@@ -1195,22 +1433,63 @@ public class Evaluator {
     protected Variable checkEquality(Variable left, Variable right) {
         if (left == null) {
             if (right == null || right.getValue() == null) {
-                return new Variable(Boolean.TRUE);
+                return Variable.TRUE;
             }
-            return new Variable(Boolean.FALSE);
+            return Variable.FALSE;
         }
         if (right == null) {
             if (left.getValue() == null) {
-                return new Variable(Boolean.TRUE);
+                return Variable.TRUE;
             }
-            return new Variable(Boolean.FALSE);
+            return Variable.FALSE;
         }
         if (left.getValue() == right.getValue()) {
-            return new Variable(Boolean.TRUE);
+            return Variable.TRUE;
         }
-        return new Variable(left.getValue().equals(right.getValue()));
+        return Variable.of(left.getValue().equals(right.getValue()));
+    }
+
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Integer || value instanceof Long;
+    }
+
+    private static boolean isPrimitiveNumber(Object value) {
+        return value instanceof Integer || value instanceof Long || value instanceof Double;
+    }
+
+    private static int intOperation(int left, int right, BinaryExpr.Operator operator) {
+        return switch (operator) {
+            case PLUS -> left + right;
+            case MINUS -> left - right;
+            case DIVIDE -> left / right;
+            case MULTIPLY -> left * right;
+            default ->
+                throw new IllegalArgumentException("Unsupported operator: " + operator);
+        };
     }
 
+    private static long longOperation(long left, long right, BinaryExpr.Operator operator) {
+        return switch (operator) {
+            case PLUS -> left + right;
+            case MINUS -> left - right;
+            case DIVIDE -> left / right;
+            case MULTIPLY -> left * right;
+            default ->
+                throw new IllegalArgumentException("Unsupported operator: " + operator);
+        };
+    }
+
+    private static double doubleOperation(double left, double right, BinaryExpr.Operator operator) {
+        return switch (operator) {
+            case PLUS -> left + right;
+            case MINUS -> left - right;
+            case DIVIDE -> left / right;
+            case MULTIPLY -> left * right;
+            default ->
+                throw new IllegalArgumentException("Unsupported operator: " + operator);
+        };
+    }
 
     private static Number performOperation(Number left, Number right, BinaryExpr.Operator operator) {
         return switch (operator) {
@@ -1226,12 +1505,28 @@ public class Evaluator {
     /**
      * Simple arithmetic operations.
      * String can be added to anything but numbers are tricker.
+     *
+     * The common cases of int, long and double operands are handled without going through a
+     * double, which is both faster and gives the same results as java would for large longs and
+     * for integer division by zero.
+     *
      * @param left the left operand
      * @param right the right operand
      * @return the result of the add operation which may be arithmatic or string concatenation
      */
     static Variable arithmeticOperation(Variable left, Variable right, BinaryExpr.Operator operator) {
-        if (left.getValue() instanceof String || right.getValue() instanceof String) {
+        Object lv = left.getValue();
+        Object rv = right.getValue();
+        if (lv instanceof Integer a && rv instanceof Integer b) {
+            return Variable.of(intOperation(a, b, operator));
+        }
+        if (isIntegral(lv) && isIntegral(rv) && (lv instanceof Long || rv instanceof Long)) {
+            return new Variable(longOperation(((Number) lv).longValue(), ((Number) rv).longValue(), operator));
+        }
+        if ((lv instanceof Double || rv instanceof Double) && isPrimitiveNumber(lv) && isPrimitiveNumber(rv)) {
+            return new Variable(doubleOperation(((Number) lv).doubleValue(), ((Number) rv).doubleValue(), operator));
+        }
+        if (lv instanceof String || rv instanceof String) {
             return new Variable(left.getValue().toString() + right.getValue().toString());
         }
         if (left.getValue() instanceof Number l && right.getValue() instanceof Number r) {
@@ -1257,7 +1552,7 @@ public class Evaluator {
     void identifyFieldDeclarations(VariableDeclarator variable) throws IOException, AntikytheraException, ReflectiveOperationException {
         if (variable.getType().isClassOrInterfaceType()) {
             Type t = variable.getType().asClassOrInterfaceType();
-            String resolvedClass = t.resolve().describe();
+            String resolvedClass = AbstractCompiler.resolveSymbols(() -> t.resolve().describe());
 
             if(finches.get(resolvedClass) != null) {
                 Variable v = new Variable(t);
@@ -1315,6 +1610,7 @@ public class Evaluator {
                     }
                 }
             }
+            v = v.modifiable();
             v.setType(t);
         }
         else
@@ -1354,7 +1650,7 @@ public class Evaluator {
         Variable v;
         Optional<Expression> init = variable.getInitializer();
         if(init.isPresent()) {
-            v = evaluateExpression(init.get());
+            v = evaluateExpression(init.get()).modifiable();
             v.setType(variable.getType());
         }
         else {
@@ -1383,26 +1679,34 @@ public class Evaluator {
         NodeList<Parameter> parameters = md.getParameters();
 
         returnValue = null;
-        for(int i = parameters.size() - 1 ; i >= 0 ; i--) {
-            Parameter p = parameters.get(i);
+        OperandStack stack = context.getStack();
+        stack.enterFrame(parameters.size());
+        context.getLoopBudget().enterMethod();
+        try {
+            for (int i = 0; i < parameters.size(); i++) {
+                Parameter p = parameters.get(i);
 
-            /*
-             * Our implementation differs from a standard Expression Evaluation engine in that we do not
-             * throw an exception if the stack is empty.
-             *
-             * The primary purpose of this is to generate tests. Those tests are sometimes generated for
-             * very complex classes. We are not trying to achieve 100% efficiency. If we can get close and
-             * allow the developer to make a few manual edits that's more than enougn.
-             */
-            if (AntikytheraRunTime.isEmptyStack()) {
-                logger.warn("Stack is empty");
-            }
-            else {
-                setLocal(md.getBody().get(), p.getNameAsString(), AntikytheraRunTime.pop());
+                /*
+                 * Our implementation differs from a standard Expression Evaluation engine in that we do not
+                 * throw an exception if the stack is empty.
+                 *
+                 * The primary purpose of this is to generate tests. Those tests are sometimes generated for
+                 * very complex classes. We are not trying to achieve 100% efficiency. If we can get close and
+                 * allow the developer to make a few manual edits that's more than enougn.
+                 */
+                if (stack.isEmpty()) {
+                    logger.warn("Stack is empty");
+                }
+                else {
+                    setLocal(md.getBody().get(), p.getNameAsString(), stack.pop());
+                }
             }
-        }
 
-        executeBlock(statements);
+            executeBlock(statements);
+        } finally {
+            context.getLoopBudget().leaveMethod();
+            stack.leaveFrame();
+        }
 
         return returnValue;
     }
@@ -1419,29 +1723,32 @@ public class Evaluator {
             NodeList<Parameter> parameters = md.getParameters();
 
             returnValue = null;
-            for (int i = parameters.size() - 1; i >= 0; i--) {
-                Parameter p = parameters.get(i);
+            OperandStack stack = context.getStack();
+            stack.enterFrame(parameters.size());
+            context.getLoopBudget().enterMethod();
+            try {
+                for (int i = 0; i < parameters.size(); i++) {
+                    Parameter p = parameters.get(i);
 
-                /*
-                 * Our implementation differs from a standard Expression Evaluation engine in that we do not
-                 * throw an exception if the stack is empty.
-                 *
-                 * The primary purpose of this is to generate tests. Those tests are sometimes generated for
-                 * very complex classes. We are not trying to achieve 100% efficiency. If we can get close and
-                 * allow the developer to make a few manual edits that's more than enougn.
-                 */
-                if (AntikytheraRunTime.isEmptyStack()) {
-                    logger.warn("Stack is empty");
-                } else {
-                    setLocal(cd.getBody(), p.getNameAsString(), AntikytheraRunTime.pop());
+                    /*
+                     * Our implementation differs from a standard Expression Evaluation engine in that we do not
+                     * throw an exception if the stack is empty.
+                     *
+                     * The primary purpose of this is to generate tests. Those tests are sometimes generated for
+                     * very complex classes. We are not trying to achieve 100% efficiency. If we can get close and
+                     * allow the developer to make a few manual edits that's more than enougn.
+                     */
+                    if (stack.isEmpty()) {
+                        logger.warn("Stack is empty");
+                    } else {
+                        setLocal(cd.getBody(), p.getNameAsString(), stack.pop());
+                    }
                 }
-            }
-
-            executeBlock(statements);
-
-            if (!AntikytheraRunTime.isEmptyStack()) {
-                AntikytheraRunTime.pop();
 
+                executeBlock(statements);
+            } finally {
+                context.getLoopBudget().leaveMethod();
+                stack.leaveFrame();
             }
         }
     }
@@ -1561,7 +1868,9 @@ public class Evaluator {
         Object arr = iter.getValue();
         evaluateExpression(forEachStmt.getVariable());
 
-        for(int i = 0 ; i < Array.getLength(arr) ; i++) {
+        LoopBudget.Loop loop = context.getLoopBudget().start(forEachStmt);
+        for(int i = 0 ; i < Array.getLength(arr) && Boolean.TRUE.equals(loops.peekLast())
+                && context.getLoopBudget().allows(loop) ; i++) {
             Object value = Array.get(arr, i);
             for(VariableDeclarator vdecl : forEachStmt.getVariable().getVariables()) {
                 Variable v = getLocal(forEachStmt, vdecl.getNameAsString());
@@ -1595,8 +1904,9 @@ public class Evaluator {
                 evaluateExpression(vdecl);
             }
         }
+        LoopBudget.Loop loop = context.getLoopBudget().start(forStmt);
         while ((boolean) evaluateExpression(forStmt.getCompare().orElseThrow()).getValue() &&
-                Boolean.TRUE.equals(loops.peekLast())) {
+                Boolean.TRUE.equals(loops.peekLast()) && context.getLoopBudget().allows(loop)) {
             executeBlock(forStmt.getBody().asBlockStmt().getStatements());
             for (Node n : forStmt.getUpdate()) {
                 if(n instanceof Expression e) {
@@ -1608,10 +1918,18 @@ public class Evaluator {
     }
 
     private void executeDoWhile(DoStmt whileStmt) throws AntikytheraException, ReflectiveOperationException {
-        loops.push(true);
-        do {
+        loops.addLast(true);
+        LoopBudget.Loop loop = context.getLoopBudget().start(whileStmt);
+        /*
+         * The first pass through the body counts against the budget like every other, so a do
+         * loop in a method that has already used up its budget is ended before the body runs.
+         */
+        boolean more = context.getLoopBudget().allows(loop);
+        while (more) {
             executeBlock(whileStmt.getBody().asBlockStmt().getStatements());
-        } while((boolean)evaluateExpression(whileStmt.getCondition()).getValue() && Boolean.TRUE.equals(loops.peekLast()));
+            more = Boolean.TRUE.equals(loops.peekLast()) && (boolean)evaluateExpression(whileStmt.getCondition()).getValue()
+                    && context.getLoopBudget().allows(loop);
+        }
         loops.pollLast();
     }
 
@@ -1622,8 +1940,10 @@ public class Evaluator {
      * @throws ReflectiveOperationException if the classes cannot be instantiated as needed with reflection
      */
     private void executeWhile(WhileStmt whileStmt) throws AntikytheraException, ReflectiveOperationException {
-        loops.push(true);
-        while((boolean)evaluateExpression(whileStmt.getCondition()).getValue() && Boolean.TRUE.equals(loops.peekLast())) {
+        loops.addLast(true);
+        LoopBudget.Loop loop = context.getLoopBudget().start(whileStmt);
+        while((boolean)evaluateExpression(whileStmt.getCondition()).getValue() && Boolean.TRUE.equals(loops.peekLast())
+                && context.getLoopBudget().allows(loop)) {
             executeBlock(whileStmt.getBody().asBlockStmt().getStatements());
         }
         loops.pollLast();
@@ -1669,7 +1989,8 @@ public class Evaluator {
         boolean matched = false;
         for(CatchClause clause : t.getCatchClauses()) {
             if(clause.getParameter().getType().isClassOrInterfaceType()) {
-                String resolvedClass = clause.getParameter().getType().asClassOrInterfaceType().resolve().describe();
+                String resolvedClass = AbstractCompiler.resolveSymbols(
+                        () -> clause.getParameter().getType().asClassOrInterfaceType().resolve().describe());
                 if(resolvedClass.equals(e.getClass().getName())) {
                     setLocal(t, clause.getParameter().getNameAsString(), new Variable(e));
                     executeBlock(clause.getBody().getStatements());
@@ -1747,10 +2068,131 @@ public class Evaluator {
 
     public void reset() {
         locals.clear();
+        frames.clear();
+    }
+
+    /**
+     * The local variables of an evaluator at some point in the execution of a method.
+     *
+     * The fields are not part of a checkpoint. Evaluating a method again from the top does not
+     * reset them either, so a run that resumes from a checkpoint sees the same fields as a full
+     * run would.
+     *
+     * Each variable is copied so that assignments made after the checkpoint was taken do not
+     * change it. The objects that the variables refer to are shared and are not copied, which is
+     * why a checkpoint should only be taken when canCheckpoint() says so.
+     */
+    static final class Checkpoint {
+        private final Map<BlockStmt, Map<String, Variable>> locals = new IdentityHashMap<>();
+        private final Map<SlotLayout, Variable[]> frames = new IdentityHashMap<>();
+    }
+
+    /**
+     * Can the local variables be captured by a checkpoint?
+     *
+     * Restoring a checkpoint gives back the objects that the locals referred to when it was taken,
+     * including any changes made to them since. That is only safe when none of them can be
+     * changed: a DTO that was passed in as an argument may have had its setters called by the
+     * run that is being abandoned. Evaluating the method from the top would have started with a
+     * fresh one. The fields are not checked because they are not restored.
+     *
+     * Any local that holds a DTO, a collection or an evaluator rules out a checkpoint, which is
+     * the case for most of the statements in typical service code.
+     *
+     * @return true if every local variable holds null or an immutable value
+     */
+    boolean canCheckpoint() {
+        for (Map<String, Variable> block : locals.values()) {
+            for (Variable v : block.values()) {
+                if (v != null && !isImmutable(v.getValue())) {
+                    return false;
+                }
+            }
+        }
+        for (Variable[] frame : frames.values()) {
+            for (Variable v : frame) {
+                if (v != null && !isImmutable(v.getValue())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isImmutable(Object value) {
+        return value == null || value instanceof String || value instanceof Boolean || value instanceof Character
+                || value instanceof Integer || value instanceof Long || value instanceof Double
+                || value instanceof Float || value instanceof Short || value instanceof Byte
+                || value instanceof BigDecimal || value instanceof BigInteger
+                || value instanceof Enum<?> || value instanceof Class<?>;
+    }
+
+    /**
+     * @return a copy of the local variables as they are now
+     */
+    Checkpoint checkpoint() {
+        Checkpoint checkpoint = new Checkpoint();
+        copyState(locals, frames, checkpoint.locals, checkpoint.frames);
+        return checkpoint;
+    }
+
+    /**
+     * Put the local variables back the way they were when the checkpoint was taken. The fields
+     * are left as they are. The same checkpoint can be restored any number of times.
+     * @param checkpoint the state to go back to
+     */
+    void restore(Checkpoint checkpoint) {
+        locals.clear();
+        frames.clear();
+        copyState(checkpoint.locals, checkpoint.frames, locals, frames);
+    }
+
+    private static void copyState(Map<BlockStmt, Map<String, Variable>> fromLocals, Map<SlotLayout, Variable[]> fromFrames,
+                                  Map<BlockStmt, Map<String, Variable>> toLocals, Map<SlotLayout, Variable[]> toFrames) {
+        for (Map.Entry<BlockStmt, Map<String, Variable>> entry : fromLocals.entrySet()) {
+            Map<String, Variable> copy = new HashMap<>();
+            entry.getValue().forEach((name, v) -> copy.put(name, v == null ? null : v.copy()));
+            toLocals.put(entry.getKey(), copy);
+        }
+        for (Map.Entry<SlotLayout, Variable[]> entry : fromFrames.entrySet()) {
+            Variable[] frame = entry.getValue();
+            Variable[] copy = new Variable[frame.length];
+            for (int i = 0; i < frame.length; i++) {
+                copy[i] = frame[i] == null ? null : frame[i].copy();
+            }
+            toFrames.put(entry.getKey(), copy);
+        }
+    }
+
+    /**
+     * Carry on executing a method from one of the statements in its body.
+     * The parameters are not taken from the stack, the locals are expected to have been restored
+     * from a checkpoint that was taken just before that statement was executed.
+     * @param md the method
+     * @param from the position of the statement in the body of the method
+     * @return the value returned by the method
+     * @throws AntikytheraException if the code cannot be evaluated
+     * @throws ReflectiveOperationException if a reflective operation fails
+     */
+    protected Variable resumeMethod(MethodDeclaration md, int from) throws AntikytheraException, ReflectiveOperationException {
+        returnFrom = null;
+        returnValue = null;
+        List<Statement> statements = md.getBody().orElseThrow().getStatements();
+        context.getLoopBudget().enterMethod();
+        try {
+            executeBlock(statements.subList(from, statements.size()));
+        } finally {
+            context.getLoopBudget().leaveMethod();
+        }
+        return returnValue;
+    }
+
+    public ExecutionContext getContext() {
+        return context;
     }
 
     public Evaluator createEvaluator(String className) {
-        return new Evaluator(className);
+        return new Evaluator(className, context);
     }
 
 
@@ -1782,6 +2224,9 @@ class NumericComparator {
     }
 
     public static int compare(Object left, Object right) {
+        if (left instanceof Integer a && right instanceof Integer b) {
+            return Integer.compare(a, b);
+        }
         if (left instanceof Number leftNumber && right instanceof Number rightNumber) {
             if (leftNumber instanceof Double || rightNumber instanceof Double) {
                 return Double.compare(leftNumber.doubleValue(), rightNumber.doubleValue());
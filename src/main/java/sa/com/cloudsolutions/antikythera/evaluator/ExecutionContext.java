@@ -0,0 +1,174 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import com.github.javaparser.ast.CompilationUnit;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The state that belongs to a single evaluation run.
+ *
+ * The class registry in AntikytheraRunTime is shared by everyone and is mostly read, but the
+ * arguments being passed to methods, the autowired instances and the lines of code that have been
+ * visited belong to the method that is being evaluated. Keeping them here instead of in statics
+ * means that several methods can be evaluated at the same time in one JVM.
+ *
+ * Each thread has a current context. An evaluator holds on to the context that was current when
+ * it was created and passes it on to the evaluators that it creates.
+ */
+public class ExecutionContext {
+    private static final ThreadLocal<ExecutionContext> current = ThreadLocal.withInitial(ExecutionContext::new);
+
+    /**
+     * The arguments that are being passed to methods and constructors.
+     *
+     * WHile it's normal practice to also place the return value of a method call into the
+     * stack, we are not doing so in here.
+     */
+    private final OperandStack stack = new OperandStack();
+
+    /**
+     * Stores the fields that have been autowired.
+     * While there should not be cyclic dependencies the reality is that they do exist in the wild.
+     * Additionally due to the way that transactions work in spring boot, you often find classes
+     * auto wiring themselves.
+     * What this means to us is that setting up the fields will often lead to infinite recursions
+     * and stack overflows. To avoid that lets keep all Autowired instances cached.
+     */
+    private final Map<String, Variable> autowired = new HashMap<>();
+
+    /**
+     * The lines of code already looked at in the method being evaluated.
+     */
+    private final CoverageMap coverage = new CoverageMap();
+
+    /**
+     * Whether expressions are compiled into closures instead of being walked each time.
+     * Null until it has been read from the compile_expressions setting or set explicitly.
+     */
+    private Boolean compileExpressions;
+
+    /**
+     * Limits how long the loops in this run may go on for. Created from the settings when first used.
+     */
+    private LoopBudget loopBudget;
+
+    /**
+     * The classes whose compilation units have been pinned by this run.
+     */
+    private final Set<AntikytheraRunTime.ClassInfo> pinned = new HashSet<>();
+
+    /**
+     * @return the context of the current thread
+     */
+    public static ExecutionContext current() {
+        return current.get();
+    }
+
+    /**
+     * Makes the given context the current one for this thread.
+     * @param context the context that evaluators created from now on will use.
+     */
+    public static void setCurrent(ExecutionContext context) {
+        current.set(context);
+    }
+
+    public void push(Variable variable) {
+        stack.push(variable);
+    }
+
+    public Variable pop() {
+        return stack.pop();
+    }
+
+    public boolean isEmptyStack() {
+        return stack.isEmpty();
+    }
+
+    /**
+     * Discards any arguments that were left over on the stack.
+     */
+    public void reset() {
+        stack.clear();
+    }
+
+    public OperandStack getStack() {
+        return stack;
+    }
+
+    public void autoWire(String className, Variable variable) {
+        autowired.put(className, variable);
+    }
+
+    public Variable getAutoWire(String className) {
+        return autowired.get(className);
+    }
+
+    /**
+     * @return true if the evaluators in this run should use the ExpressionCompiler
+     */
+    public boolean isCompilingExpressions() {
+        if (compileExpressions == null) {
+            compileExpressions = Settings.getProperty(ExpressionCompiler.COMPILE_EXPRESSIONS, Boolean.class)
+                    .orElse(false);
+        }
+        return compileExpressions;
+    }
+
+    public void setCompileExpressions(boolean compileExpressions) {
+        this.compileExpressions = compileExpressions;
+    }
+
+    public LoopBudget getLoopBudget() {
+        if (loopBudget == null) {
+            loopBudget = new LoopBudget();
+        }
+        return loopBudget;
+    }
+
+    public void setLoopBudget(LoopBudget loopBudget) {
+        this.loopBudget = loopBudget;
+    }
+
+    /**
+     * Keeps the compilation unit of a class in memory until this run releases its pins.
+     *
+     * A compilation unit that is evicted is parsed again into new nodes. That is fine for code
+     * that only reads it, but the evaluators remember things about individual nodes (slot layouts,
+     * compiled expressions, coverage and checkpoints) and the generators change the tree. So the
+     * classes that are evaluated or generated from are pinned while the run is in progress, and
+     * only the rest are subject to the limit on the number of compilation units.
+     *
+     * @param className the fully qualified name of the class
+     * @return the compilation unit, which will not be replaced by another instance until the pins
+     *      are released, or null if the class is not known
+     */
+    public CompilationUnit pin(String className) {
+        AntikytheraRunTime.ClassInfo info = AntikytheraRunTime.getClassInfo(className);
+        if (info == null) {
+            return null;
+        }
+        if (pinned.add(info)) {
+            return info.pin();
+        }
+        return info.getCu();
+    }
+
+    /**
+     * Releases the compilation units pinned by this run, once it no longer needs their nodes.
+     * Those that are not pinned by any other run can be evicted again.
+     */
+    public void unpinAll() {
+        for (AntikytheraRunTime.ClassInfo info : pinned) {
+            info.unpin();
+        }
+        pinned.clear();
+    }
+
+    CoverageMap getCoverage() {
+        return coverage;
+    }
+}
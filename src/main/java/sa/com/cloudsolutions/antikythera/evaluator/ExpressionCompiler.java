@@ -0,0 +1,108 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import com.github.javaparser.ast.DataKey;
+import com.github.javaparser.ast.expr.BinaryExpr;
+import com.github.javaparser.ast.expr.Expression;
+import sa.com.cloudsolutions.antikythera.exception.AntikytheraException;
+import sa.com.cloudsolutions.antikythera.exception.EvaluatorException;
+
+/**
+ * Converts expressions into trees of closures.
+ *
+ * Walking an expression means going through the chain of node type checks in the evaluator and
+ * looking up the value of literals. Inside an interpreted loop the same expressions are evaluated
+ * over and over. When the compile_expressions setting is true each expression is converted once
+ * into a closure in which the operator, the operands and the literal values have already been
+ * worked out.
+ *
+ * Names, literals, binary operators and brackets are compiled. Other kinds of expressions are
+ * compiled into a closure that hands the expression over to the tree walker, their sub expressions
+ * are compiled when the walker evaluates them.
+ *
+ * The closures do not hold any state of an evaluation, so they are kept in the data of the node
+ * and shared by all evaluators. Cloning a node copies its data, so the compiled form also keeps a
+ * reference to the expression that it was created for.
+ */
+class ExpressionCompiler {
+    public static final String COMPILE_EXPRESSIONS = "compile_expressions";
+
+    private static final DataKey<Compiled> KEY = new DataKey<>() {};
+
+    /**
+     * An expression that has been compiled.
+     */
+    @FunctionalInterface
+    interface CompiledExpression {
+        Variable execute(Evaluator evaluator) throws AntikytheraException, ReflectiveOperationException;
+    }
+
+    private record Compiled(Expression owner, CompiledExpression code) {}
+
+    private ExpressionCompiler() {}
+
+    /**
+     * Find the compiled form of the expression, compiling it if needed.
+     * @param expr the expression
+     * @return a closure that evaluates the expression
+     */
+    static CompiledExpression compile(Expression expr) {
+        synchronized (expr) {
+            if (expr.containsData(KEY)) {
+                Compiled compiled = expr.getData(KEY);
+                if (compiled.owner() == expr) {
+                    return compiled.code();
+                }
+            }
+            CompiledExpression code = build(expr);
+            expr.setData(KEY, new Compiled(expr, code));
+            return code;
+        }
+    }
+
+    private static CompiledExpression build(Expression expr) {
+        if (expr.isNameExpr()) {
+            String name = expr.asNameExpr().getNameAsString();
+            return evaluator -> evaluator.getValue(expr, name);
+        }
+        if (expr.isLiteralExpr()) {
+            return literal(expr);
+        }
+        if (expr.isBinaryExpr()) {
+            return binary(expr.asBinaryExpr());
+        }
+        if (expr.isEnclosedExpr()) {
+            return compile(expr.asEnclosedExpr().getInner());
+        }
+        if (expr.isCastExpr()) {
+            return compile(expr.asCastExpr().getExpression());
+        }
+        return evaluator -> evaluator.walkExpression(expr);
+    }
+
+    private static CompiledExpression literal(Expression expr) {
+        Variable value;
+        try {
+            value = Evaluator.evaluateLiteral(expr);
+        } catch (EvaluatorException e) {
+            return evaluator -> evaluator.walkExpression(expr);
+        }
+        return evaluator -> value;
+    }
+
+    private static CompiledExpression binary(BinaryExpr binaryExpr) {
+        BinaryExpr.Operator operator = binaryExpr.getOperator();
+        Expression leftExpression = binaryExpr.getLeft();
+        Expression rightExpression = binaryExpr.getRight();
+        CompiledExpression left = compile(leftExpression);
+        CompiledExpression right = compile(rightExpression);
+
+        return evaluator -> {
+            Variable l = left.execute(evaluator);
+            if (operator == BinaryExpr.Operator.OR && (boolean) l.getValue()) {
+                return Variable.TRUE;
+            }
+            Variable r = right.execute(evaluator);
+            return evaluator.binaryOperation(operator, l, r, leftExpression, rightExpression);
+        };
+    }
+}
@@ -55,29 +55,45 @@ public class LineOfCode {
      */
     private RepositoryQuery repositoryQuery;
 
+    /**
+     * When the line belongs to a CoverageMap the color is kept there instead of in the color field.
+     */
+    private CoverageMap coverage;
+    private int id;
+
     public LineOfCode(Statement statement) {
         this.statement = statement;
     }
 
+    LineOfCode(Statement statement, CoverageMap coverage, int id) {
+        this.statement = statement;
+        this.coverage = coverage;
+        this.id = id;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if(obj instanceof LineOfCode b) {
-            return b.statement.equals(statement);
+            return b.statement == statement;
         }
         return false;
     }
 
     @Override
     public int hashCode() {
-        return statement.hashCode();
+        return System.identityHashCode(statement);
     }
 
     public int getColor() {
-        return color;
+        return coverage == null ? color : coverage.getColor(id);
     }
 
     public void setColor(int color) {
-        this.color = color;
+        if (coverage == null) {
+            this.color = color;
+        } else {
+            coverage.setColor(id, color);
+        }
     }
 
     public void addPrecondition(Expression precondition, boolean state) {
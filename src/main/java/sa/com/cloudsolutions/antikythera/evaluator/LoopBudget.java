@@ -0,0 +1,220 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import com.github.javaparser.ast.Node;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the number of times that the body of a loop is executed.
+ *
+ * A loop over a mocked collection or a while(true) whose break can never be reached would keep
+ * the evaluator spinning for as long as we let it. We are generating tests, not running the
+ * application, so there is no point in going round a loop thousands of times. Each loop is allowed
+ * a number of iterations and an amount of time, and all the loops of a method share a further
+ * limit on the total number of iterations and on the time since the method was entered. When a
+ * limit is reached the loop is ended as if it had hit a break statement.
+ *
+ * With the cover_loops_once setting each loop body is executed at most once, which is enough to
+ * visit all the lines in it.
+ *
+ * One of these belongs to each ExecutionContext. The counts of how often the limits were reached
+ * are shared by all of them.
+ */
+public class LoopBudget {
+    public static final String MAX_LOOP_ITERATIONS = "max_loop_iterations";
+    public static final String MAX_METHOD_ITERATIONS = "max_method_iterations";
+    public static final String LOOP_TIME_LIMIT = "loop_time_limit";
+    public static final String METHOD_TIME_LIMIT = "method_time_limit";
+    public static final String COVER_LOOPS_ONCE = "cover_loops_once";
+
+    private static final Logger logger = LoggerFactory.getLogger(LoopBudget.class);
+
+    private static final AtomicLong loops = new AtomicLong();
+    private static final AtomicLong iterations = new AtomicLong();
+    private static final AtomicLong loopLimitHits = new AtomicLong();
+    private static final AtomicLong methodLimitHits = new AtomicLong();
+    private static final AtomicLong timeLimitHits = new AtomicLong();
+    private static final AtomicLong methodTimeLimitHits = new AtomicLong();
+
+    private final long maxLoopIterations;
+    private final long maxMethodIterations;
+    private final long timeLimit;
+    private final long methodTimeLimit;
+    private final boolean coverOnce;
+
+    /**
+     * The methods that are being executed, the one that is currently executing is at the top.
+     */
+    private final Deque<Method> methods = new ArrayDeque<>();
+
+    /**
+     * The iterations made so far by the loops of a method and the time at which it was entered.
+     */
+    private static final class Method {
+        private final long start = System.currentTimeMillis();
+        private long count;
+    }
+
+    /**
+     * A loop that has been started.
+     */
+    public static final class Loop {
+        private final Node statement;
+        private final long start;
+        private long count;
+
+        private Loop(Node statement) {
+            this.statement = statement;
+            this.start = System.currentTimeMillis();
+        }
+
+        /**
+         * @return the number of times that the body has been allowed to run
+         */
+        public long getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * Creates a budget from the settings.
+     * max_loop_iterations and max_method_iterations default to 100000 and 1000000, a value of
+     * zero or less removes the limit. loop_time_limit and method_time_limit are in milliseconds
+     * and are off by default.
+     */
+    public LoopBudget() {
+        this(Settings.getProperty(MAX_LOOP_ITERATIONS, Integer.class).orElse(100_000),
+                Settings.getProperty(MAX_METHOD_ITERATIONS, Integer.class).orElse(1_000_000),
+                Settings.getProperty(LOOP_TIME_LIMIT, Integer.class).orElse(0),
+                Settings.getProperty(METHOD_TIME_LIMIT, Integer.class).orElse(0),
+                Settings.getProperty(COVER_LOOPS_ONCE, Boolean.class).orElse(false));
+    }
+
+    public LoopBudget(long maxLoopIterations, long maxMethodIterations, long timeLimit, long methodTimeLimit,
+                      boolean coverOnce) {
+        this.maxLoopIterations = maxLoopIterations;
+        this.maxMethodIterations = maxMethodIterations;
+        this.timeLimit = timeLimit;
+        this.methodTimeLimit = methodTimeLimit;
+        this.coverOnce = coverOnce;
+        methods.push(new Method());
+    }
+
+    /**
+     * Called when a method starts executing, its loops get a fresh method limit.
+     */
+    public void enterMethod() {
+        methods.push(new Method());
+    }
+
+    /**
+     * Called when a method has finished executing.
+     */
+    public void leaveMethod() {
+        if (methods.size() > 1) {
+            methods.pop();
+        }
+    }
+
+    /**
+     * Called when a loop is about to start.
+     * @param statement the loop statement
+     * @return the loop to be passed to allows() before each iteration
+     */
+    public Loop start(Node statement) {
+        loops.incrementAndGet();
+        return new Loop(statement);
+    }
+
+    /**
+     * Decide whether the body of the loop may be executed one more time.
+     * @param loop the loop returned by start()
+     * @return true if the budget has room for another iteration
+     */
+    public boolean allows(Loop loop) {
+        if (coverOnce && loop.count > 0) {
+            return false;
+        }
+        Method method = methods.peek();
+        if (maxLoopIterations > 0 && loop.count >= maxLoopIterations) {
+            loopLimitHits.incrementAndGet();
+            logger.warn("Loop ended after {} iterations: {}", loop.count, firstLine(loop));
+            return false;
+        }
+        if (maxMethodIterations > 0 && method.count >= maxMethodIterations) {
+            methodLimitHits.incrementAndGet();
+            logger.warn("Method has used up its {} loop iterations: {}", method.count, firstLine(loop));
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (timeLimit > 0 && now - loop.start > timeLimit) {
+            timeLimitHits.incrementAndGet();
+            logger.warn("Loop ended after {} ms: {}", timeLimit, firstLine(loop));
+            return false;
+        }
+        if (methodTimeLimit > 0 && now - method.start > methodTimeLimit) {
+            methodTimeLimitHits.incrementAndGet();
+            logger.warn("Method has used up its {} ms for loops: {}", methodTimeLimit, firstLine(loop));
+            return false;
+        }
+        loop.count++;
+        method.count++;
+        iterations.incrementAndGet();
+        return true;
+    }
+
+    private static String firstLine(Loop loop) {
+        return loop.statement.toString().lines().findFirst().orElse("");
+    }
+
+    public boolean isCoveringOnce() {
+        return coverOnce;
+    }
+
+    /**
+     * @return the number of loops that have been started
+     */
+    public static long getLoops() {
+        return loops.get();
+    }
+
+    /**
+     * @return the number of loop iterations that were allowed
+     */
+    public static long getIterations() {
+        return iterations.get();
+    }
+
+    /**
+     * @return the number of loops that were ended by the per loop iteration limit
+     */
+    public static long getLoopLimitHits() {
+        return loopLimitHits.get();
+    }
+
+    /**
+     * @return the number of loops that were ended by the per method iteration limit
+     */
+    public static long getMethodLimitHits() {
+        return methodLimitHits.get();
+    }
+
+    /**
+     * @return the number of loops that were ended by the time limit
+     */
+    public static long getTimeLimitHits() {
+        return timeLimitHits.get();
+    }
+
+    /**
+     * @return the number of loops that were ended by the per method time limit
+     */
+    public static long getMethodTimeLimitHits() {
+        return methodTimeLimitHits.get();
+    }
+}
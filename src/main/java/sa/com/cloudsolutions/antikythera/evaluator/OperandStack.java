@@ -0,0 +1,139 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import java.util.Arrays;
+
+/**
+ * The stack used to pass arguments to the methods and constructors that are being interpreted.
+ *
+ * The caller pushes the arguments starting with the last one so that the first argument ends up
+ * at the top of the stack. The callee opens a frame for its parameters, pops them in order and
+ * closes the frame when it returns. Anything that the callee left behind in its frame is then
+ * discarded.
+ *
+ * The values are held in an array that grows as needed, so pushing does not allocate. A callee
+ * cannot pop values that belong to the frame of its caller. When a callee finds fewer arguments
+ * than it has parameters the shortfall is counted as a mismatch.
+ */
+public class OperandStack {
+    private Variable[] slots = new Variable[16];
+    /**
+     * The number of slots in use.
+     */
+    private int top;
+    /**
+     * The base pointers of the frames that enclose the current frame.
+     */
+    private int[] frames = new int[8];
+    /**
+     * The number of open frames.
+     */
+    private int depth;
+    /**
+     * The index of the first slot that belongs to the current frame.
+     */
+    private int base;
+
+    private int maxSize;
+    private int maxDepth;
+    private long mismatches;
+
+    public void push(Variable variable) {
+        if (top == slots.length) {
+            slots = Arrays.copyOf(slots, top * 2);
+        }
+        slots[top++] = variable;
+        if (top > maxSize) {
+            maxSize = top;
+        }
+    }
+
+    /**
+     * Removes the value at the top of the stack.
+     * @return the value that was at the top
+     * @throws IllegalStateException if there is nothing left in the current frame
+     */
+    public Variable pop() {
+        if (top == base) {
+            throw new IllegalStateException("Operand stack underflow");
+        }
+        Variable v = slots[--top];
+        slots[top] = null;
+        return v;
+    }
+
+    /**
+     * @return true if there is nothing left in the current frame
+     */
+    public boolean isEmpty() {
+        return top == base;
+    }
+
+    /**
+     * @return the number of values in the current frame
+     */
+    public int size() {
+        return top - base;
+    }
+
+    /**
+     * Opens a frame for a callee. The frame holds the arguments that the caller pushed.
+     * @param parameterCount the number of parameters of the callee.
+     */
+    public void enterFrame(int parameterCount) {
+        int available = top - base;
+        if (available < parameterCount) {
+            mismatches++;
+        }
+        if (depth == frames.length) {
+            frames = Arrays.copyOf(frames, depth * 2);
+        }
+        frames[depth++] = base;
+        base = top - Math.min(available, parameterCount);
+        if (depth > maxDepth) {
+            maxDepth = depth;
+        }
+    }
+
+    /**
+     * Closes the current frame, discarding anything that the callee left in it.
+     */
+    public void leaveFrame() {
+        if (depth == 0) {
+            throw new IllegalStateException("No frame to leave");
+        }
+        Arrays.fill(slots, base, top, null);
+        top = base;
+        base = frames[--depth];
+    }
+
+    /**
+     * Discards all the values and frames.
+     */
+    public void clear() {
+        Arrays.fill(slots, 0, top, null);
+        top = 0;
+        base = 0;
+        depth = 0;
+    }
+
+    /**
+     * @return the largest number of values that have been on the stack at the same time
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return the deepest that frames have been nested
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @return the number of times a callee found fewer arguments than it has parameters
+     */
+    public long getMismatches() {
+        return mismatches;
+    }
+}
@@ -5,6 +5,8 @@ import com.github.javaparser.ast.expr.MethodCallExpr;
 import com.github.javaparser.ast.expr.ObjectCreationExpr;
 import com.github.javaparser.resolution.UnsolvedSymbolException;
 import sa.com.cloudsolutions.antikythera.exception.AntikytheraException;
+import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
+import sa.com.cloudsolutions.antikythera.parser.ClassCache;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
@@ -87,14 +89,18 @@ public class Reflect {
         for (int i = 0; i < arguments.size(); i++) {
             argValues[i] = evaluator.evaluateExpression(arguments.get(i));
             if (argValues[i] != null) {
-                Class<?> wrapperClass = argValues[i].getClazz() == null ? argValues[i].getValue().getClass() : argValues[i].getClazz();
+                Class<?> wrapperClass = argValues[i].getClazz();
+                if (wrapperClass == null) {
+                    wrapperClass = argValues[i].getValue() == null ? Object.class : argValues[i].getValue().getClass();
+                }
                 paramTypes[i] = wrapperClass;
                 args[i] = argValues[i].getValue();
             } else {
                 try {
-                    String className = arguments.get(0).calculateResolvedType().describe();
+                    String className = AbstractCompiler.resolveSymbols(
+                            () -> arguments.get(0).calculateResolvedType().describe());
                     className = primitiveToWrapper(className);
-                    paramTypes[i] = Class.forName(className);
+                    paramTypes[i] = ClassCache.forName(className);
                 } catch (UnsolvedSymbolException us) {
                     paramTypes[i] = Object.class;
                 }
@@ -126,7 +132,7 @@ public class Reflect {
             case "short" -> short.class;
             case "byte" -> byte.class;
             case "char" -> char.class;
-            default -> Class.forName(elementType);
+            default -> ClassCache.forName(elementType);
         };
     }
 
@@ -0,0 +1,233 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers which method or constructor is called when a class is used with a given set of
+ * argument types.
+ *
+ * Reflect.findMethod goes through all the public methods of the class, comparing the name and
+ * the parameter types, for each reflective call that the evaluator makes. Calls such as
+ * String.equals or the getters of a DTO are made over and over again with the same argument
+ * types, so the outcome of the search, including the fact that nothing was found, is kept here.
+ * The same goes for Reflect.findConstructor and for the search through the declared classes of
+ * an outer class when an inner class is instantiated.
+ *
+ * Where possible the method or constructor is turned into a MethodHandle that takes an array of
+ * arguments, which is cheaper to invoke than going through reflection. Those that cannot be
+ * reached through a public lookup, such as public methods declared in a private class, are still
+ * invoked through reflection so that they fail in the same way as before.
+ */
+public class ReflectionCache {
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+    private static final MethodType CREATOR_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    private static final Map<Key, Optional<Invoker>> methods = new ConcurrentHashMap<>();
+    private static final Map<Key, Optional<Creator>> constructors = new ConcurrentHashMap<>();
+    private static final Map<Key, Optional<Class<?>>> declaredClasses = new ConcurrentHashMap<>();
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    private record Key(Class<?> clazz, String name, List<Class<?>> types) {}
+
+    private ReflectionCache() {}
+
+    /**
+     * A method that has been found along with the means to invoke it.
+     */
+    public static final class Invoker {
+        private final Method method;
+        private final MethodHandle handle;
+        private final boolean arrayArgument;
+
+        private Invoker(Method method) {
+            this.method = method;
+            Class<?>[] types = method.getParameterTypes();
+            this.arrayArgument = types.length == 1 && types[0].equals(Object[].class);
+            this.handle = toHandle(method);
+        }
+
+        public Method getMethod() {
+            return method;
+        }
+
+        /**
+         * Invoke the method.
+         * @param target the object on which the method is invoked, ignored for static methods
+         * @param args the arguments. If the method takes a single Object[] the arguments are
+         *             wrapped in an array of their own.
+         * @return the value returned by the method, null for void methods
+         * @throws ReflectiveOperationException if the method cannot be invoked. Exceptions thrown
+         *      by the method itself are wrapped in an InvocationTargetException.
+         */
+        public Object invoke(Object target, Object[] args) throws ReflectiveOperationException {
+            Object[] finalArgs = arrayArgument ? new Object[]{args} : args;
+            if (handle == null) {
+                return method.invoke(target, finalArgs);
+            }
+            if (target == null && !Modifier.isStatic(method.getModifiers())) {
+                /*
+                 * Leave it to reflection to report this the usual way.
+                 */
+                return method.invoke(null, finalArgs);
+            }
+            try {
+                return handle.invokeExact(target, finalArgs);
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new InvocationTargetException(e);
+            }
+        }
+
+        private static MethodHandle toHandle(Method method) {
+            try {
+                MethodHandle mh = MethodHandles.publicLookup().unreflect(method).asFixedArity();
+                if (Modifier.isStatic(method.getModifiers())) {
+                    mh = MethodHandles.dropArguments(mh, 0, Object.class);
+                }
+                return mh.asSpreader(Object[].class, method.getParameterCount()).asType(INVOKER_TYPE);
+            } catch (IllegalAccessException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * A constructor that has been found along with the means to invoke it.
+     */
+    public static final class Creator {
+        private final Constructor<?> constructor;
+        private final MethodHandle handle;
+
+        private Creator(Constructor<?> constructor) {
+            this.constructor = constructor;
+            this.handle = toHandle(constructor);
+        }
+
+        public Constructor<?> getConstructor() {
+            return constructor;
+        }
+
+        /**
+         * Create a new instance.
+         * @param args the arguments for the constructor
+         * @return the new instance
+         * @throws ReflectiveOperationException if the constructor cannot be invoked. Exceptions
+         *      thrown by the constructor itself are wrapped in an InvocationTargetException.
+         */
+        public Object newInstance(Object[] args) throws ReflectiveOperationException {
+            if (handle == null) {
+                return constructor.newInstance(args);
+            }
+            try {
+                return handle.invokeExact(args);
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new InvocationTargetException(e);
+            }
+        }
+
+        private static MethodHandle toHandle(Constructor<?> constructor) {
+            if (Modifier.isAbstract(constructor.getDeclaringClass().getModifiers())) {
+                return null;
+            }
+            try {
+                return MethodHandles.publicLookup().unreflectConstructor(constructor).asFixedArity()
+                        .asSpreader(Object[].class, constructor.getParameterCount()).asType(CREATOR_TYPE);
+            } catch (IllegalAccessException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Find the method that will be called for the given argument types.
+     * @param clazz the class on which we need to match the method name
+     * @param methodName the name of the method to find
+     * @param paramTypes the types of the arguments, left unchanged
+     * @return the invoker for the matching method or null if there isn't one
+     */
+    public static Invoker findMethod(Class<?> clazz, String methodName, Class<?>[] paramTypes) {
+        Key key = new Key(clazz, methodName, Arrays.asList(paramTypes.clone()));
+        Optional<Invoker> invoker = methods.get(key);
+        if (invoker != null) {
+            hits.incrementAndGet();
+            return invoker.orElse(null);
+        }
+        misses.incrementAndGet();
+        Method method = Reflect.findMethod(clazz, methodName, paramTypes.clone());
+        invoker = Optional.ofNullable(method).map(Invoker::new);
+        methods.put(key, invoker);
+        return invoker.orElse(null);
+    }
+
+    /**
+     * Find the constructor that will be called for the given argument types.
+     * @param clazz the class to be instantiated
+     * @param paramTypes the types of the arguments, left unchanged
+     * @return the creator for the matching constructor or null if there isn't one
+     */
+    public static Creator findConstructor(Class<?> clazz, Class<?>[] paramTypes) {
+        Key key = new Key(clazz, null, Arrays.asList(paramTypes.clone()));
+        Optional<Creator> creator = constructors.get(key);
+        if (creator != null) {
+            hits.incrementAndGet();
+            return creator.orElse(null);
+        }
+        misses.incrementAndGet();
+        Constructor<?> constructor = Reflect.findConstructor(clazz, paramTypes.clone());
+        creator = Optional.ofNullable(constructor).map(Creator::new);
+        constructors.put(key, creator);
+        return creator.orElse(null);
+    }
+
+    /**
+     * Find a class declared inside another class.
+     * @param outer the enclosing class
+     * @param name the binary name of the class to find
+     * @return the declared class or null if the outer class does not have one by that name
+     */
+    public static Class<?> findDeclaredClass(Class<?> outer, String name) {
+        Key key = new Key(outer, name, List.of());
+        Optional<Class<?>> declared = declaredClasses.get(key);
+        if (declared != null) {
+            hits.incrementAndGet();
+            return declared.orElse(null);
+        }
+        misses.incrementAndGet();
+        declared = Arrays.stream(outer.getDeclaredClasses()).filter(c -> c.getName().equals(name)).findFirst();
+        declaredClasses.put(key, declared);
+        return declared.orElse(null);
+    }
+
+    /**
+     * Forget everything, the class loader has changed.
+     */
+    public static void reset() {
+        methods.clear();
+        constructors.clear();
+        declaredClasses.clear();
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+}
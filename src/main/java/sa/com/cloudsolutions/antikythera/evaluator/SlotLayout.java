@@ -0,0 +1,186 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import com.github.javaparser.ast.DataKey;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.stmt.BlockStmt;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns a slot to each parameter and local variable of a method.
+ *
+ * The layout is worked out the first time the method is executed and is kept in the data of the
+ * method declaration, so that it is shared by every evaluator that runs the method afterwards.
+ * The name expressions in the body that refer to one of these variables are resolved to their
+ * slot at the same time. Reading such a variable then becomes an array access instead of a walk
+ * through the enclosing blocks.
+ *
+ * Variables that are not declared in the ordinary way, such as the parameters of catch clauses,
+ * do not get a slot. The evaluator keeps those in a map for the block as before.
+ */
+class SlotLayout {
+    private static final DataKey<SlotLayout> KEY = new DataKey<>() {};
+
+    /**
+     * The layout used for blocks that do not belong to a method, for example constructor bodies.
+     */
+    static final SlotLayout EMPTY = new SlotLayout();
+
+    /**
+     * For each block, the slots of the variables that are declared in it.
+     */
+    private final Map<BlockStmt, Map<String, Integer>> declared = new IdentityHashMap<>();
+    /**
+     * The slots of the variables that the name expressions in the method refer to.
+     */
+    private final Map<NameExpr, Integer> resolved = new IdentityHashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    private SlotLayout() {}
+
+    private SlotLayout(MethodDeclaration md) {
+        BlockStmt body = md.getBody().orElse(null);
+        if (body == null) {
+            return;
+        }
+        for (Parameter p : md.getParameters()) {
+            declare(body, p.getNameAsString());
+        }
+        for (VariableDeclarator decl : body.findAll(VariableDeclarator.class)) {
+            BlockStmt block = Evaluator.findBlockStatement(decl);
+            if (block != null && belongsTo(block, md)) {
+                declare(block, decl.getNameAsString());
+            }
+        }
+        for (NameExpr name : body.findAll(NameExpr.class)) {
+            BlockStmt block = Evaluator.findBlockStatement(name);
+            if (block != null && belongsTo(block, md)) {
+                int slot = resolve(block, name.getNameAsString());
+                if (slot >= 0) {
+                    resolved.put(name, slot);
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the layout for the method, working it out if this is the first time it's needed.
+     * @param md the method declaration
+     * @return the layout of the method's locals
+     */
+    static SlotLayout of(MethodDeclaration md) {
+        synchronized (md) {
+            if (md.containsData(KEY)) {
+                return md.getData(KEY);
+            }
+            SlotLayout layout = new SlotLayout(md);
+            md.setData(KEY, layout);
+            return layout;
+        }
+    }
+
+    /**
+     * Find the layout that applies to the variables declared in a block.
+     * @param block a block statement
+     * @return the layout of the method that the block belongs to or EMPTY
+     */
+    static SlotLayout of(BlockStmt block) {
+        MethodDeclaration md = enclosingMethod(block);
+        return md == null ? EMPTY : of(md);
+    }
+
+    private static boolean belongsTo(BlockStmt block, MethodDeclaration md) {
+        return enclosingMethod(block) == md;
+    }
+
+    /**
+     * @return the nearest method declaration that contains the node or null if there isn't one.
+     */
+    private static MethodDeclaration enclosingMethod(Node node) {
+        Node current = node.getParentNode().orElse(null);
+        while (current != null && !(current instanceof MethodDeclaration)) {
+            current = current.getParentNode().orElse(null);
+        }
+        return (MethodDeclaration) current;
+    }
+
+    private void declare(BlockStmt block, String name) {
+        Map<String, Integer> slots = declared.computeIfAbsent(block, k -> new HashMap<>());
+        if (!slots.containsKey(name)) {
+            slots.put(name, names.size());
+            names.add(name);
+        }
+    }
+
+    /**
+     * Walk up through the enclosing blocks in the same way as the evaluator does at run time.
+     */
+    private int resolve(BlockStmt block, String name) {
+        BlockStmt current = block;
+        while (current != null) {
+            int slot = declaredSlot(current, name);
+            if (slot >= 0) {
+                return slot;
+            }
+            Node parent = current.getParentNode().orElse(null);
+            if (parent == null || parent instanceof MethodDeclaration) {
+                break;
+            }
+            current = Evaluator.findBlockStatement(parent);
+        }
+        return -1;
+    }
+
+    /**
+     * @param name a name expression in the method
+     * @return the slot of the local variable that it refers to or -1 if it does not refer to one.
+     */
+    int slotOf(NameExpr name) {
+        Integer slot = resolved.get(name);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * @param block a block in the method
+     * @param name the name of a variable
+     * @return the slot of the variable if it is declared in the block, otherwise -1
+     */
+    int declaredSlot(BlockStmt block, String name) {
+        Map<String, Integer> slots = declared.get(block);
+        if (slots == null) {
+            return -1;
+        }
+        Integer slot = slots.get(name);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * @return the number of slots needed for the locals of the method
+     */
+    int size() {
+        return names.size();
+    }
+
+    /**
+     * Find a variable by name alone, used when there is no block to go by.
+     * @param frame the values of the slots
+     * @param name the name of the variable
+     * @return the value in the first slot with that name that has one
+     */
+    Variable find(Variable[] frame, String name) {
+        for (int i = 0; i < names.size(); i++) {
+            if (frame[i] != null && names.get(i).equals(name)) {
+                return frame[i];
+            }
+        }
+        return null;
+    }
+}
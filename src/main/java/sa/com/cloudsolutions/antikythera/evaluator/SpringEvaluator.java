@@ -3,15 +3,18 @@ package sa.com.cloudsolutions.antikythera.evaluator;
 import com.github.javaparser.ast.NodeList;
 import com.github.javaparser.ast.expr.ObjectCreationExpr;
 import com.github.javaparser.ast.expr.VariableDeclarationExpr;
+import com.github.javaparser.ast.stmt.BlockStmt;
 import com.github.javaparser.ast.stmt.ExpressionStmt;
 import com.github.javaparser.ast.type.ClassOrInterfaceType;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
 import sa.com.cloudsolutions.antikythera.exception.AntikytheraException;
 import sa.com.cloudsolutions.antikythera.evaluator.ArgumentGenerator;
 import sa.com.cloudsolutions.antikythera.generator.QueryMethodArgument;
 import sa.com.cloudsolutions.antikythera.generator.TruthTable;
 import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
+import sa.com.cloudsolutions.antikythera.parser.ClassCache;
 import sa.com.cloudsolutions.antikythera.depsolver.ClassProcessor;
 import sa.com.cloudsolutions.antikythera.generator.ControllerResponse;
 import sa.com.cloudsolutions.antikythera.exception.EvaluatorException;
@@ -38,13 +41,14 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Extends the basic evaluator to provide support for JPA repositories and their special behavior.
@@ -52,10 +56,16 @@ import java.util.Set;
 public class SpringEvaluator extends Evaluator {
     private static final Logger logger = LoggerFactory.getLogger(SpringEvaluator.class);
 
+    /**
+     * When true, execution goes back to a checkpoint taken before an if statement to cover the
+     * rest of a method instead of starting again from the top.
+     */
+    public static final String REPLAY_BRANCHES = "replay_branches";
+
     /**
      * Maintains a list of repositories that we have already encountered.
      */
-    private static final Map<String, RepositoryParser> repositories = new HashMap<>();
+    private static final Map<String, RepositoryParser> repositories = new ConcurrentHashMap<>();
 
     /**
      * List of generators that we have.
@@ -71,11 +81,6 @@ public class SpringEvaluator extends Evaluator {
      */
     private MethodDeclaration currentMethod;
 
-    /**
-     * The lines of code already looked at in the method.
-     */
-    private static HashMap<Integer, LineOfCode> lines = new HashMap<>();
-
     /**
      * Sort of a stack that keeps track of the conditional code blocks.
      * We consider IF THEN ELSE statements as branching statements. However we also consider JPA
@@ -91,7 +96,35 @@ public class SpringEvaluator extends Evaluator {
      * empty responses. If due to some reason there are valid resultsets of integers like 0 for
      * primary keys there's nothing we can do about it, we just move onto the next test.
      */
-    private final Set<IfStmt> branching = new HashSet<>();
+    private final Set<IfStmt> branching = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Checkpoints taken just before each if statement in the body of the method being visited was
+     * first executed. Only used when the replay_branches setting is true.
+     */
+    private final Map<Statement, Checkpoint> checkpoints = new IdentityHashMap<>();
+
+    /**
+     * The body of the method being visited, when checkpoints are being taken.
+     */
+    private BlockStmt replayBody;
+
+    /**
+     * Keeps track of the branches of the method being visited.
+     */
+    private BranchScheduler scheduler;
+
+    /**
+     * The copies of the repository queries that are executed by the method being visited.
+     * The repositories are shared by all the evaluators, the arguments of their queries are not.
+     */
+    private final Map<MethodDeclaration, RepositoryQuery> queries = new IdentityHashMap<>();
+
+    /**
+     * The if statements that the current run has to send a particular way. These are the one
+     * that holds the branch the run was scheduled for and the if statements it is nested in.
+     */
+    private final Map<IfStmt, Boolean> forced = new IdentityHashMap<>();
 
     private boolean onTest;
 
@@ -104,6 +137,10 @@ public class SpringEvaluator extends Evaluator {
         super(className);
     }
 
+    protected SpringEvaluator(String className, ExecutionContext context) {
+        super(className, context);
+    }
+
     public static Map<String, RepositoryParser> getRepositories() {
         return repositories;
     }
@@ -115,6 +152,12 @@ public class SpringEvaluator extends Evaluator {
      * so that we can excercise all the paths in the code. This is done by setting the values
      * of variables so that different branches in conditional statements are taken.
      *
+     * With the replay_branches setting, each run after the first starts from a checkpoint taken
+     * before the last if statement ahead of the code that has not been covered.
+     *
+     * Once every top level statement has been reached, the BranchScheduler may ask for more runs
+     * to take the branches that have been missed.
+     *
      * @param md The MethodDeclaration being worked on
      * @throws AntikytheraException
      * @throws ReflectiveOperationException
@@ -122,19 +165,26 @@ public class SpringEvaluator extends Evaluator {
     @Override
     public void visit(MethodDeclaration md) throws AntikytheraException, ReflectiveOperationException {
         branching.clear();
+        checkpoints.clear();
+        queries.clear();
+        for (TestGenerator gen : generators) {
+            gen.setQuery(null);
+        }
+        replayBody = Settings.getProperty(REPLAY_BRANCHES, Boolean.class).orElse(false)
+                ? md.getBody().orElse(null) : null;
         md.getParentNode().ifPresent(p -> {
             if (p instanceof ClassOrInterfaceDeclaration cdecl && cdecl.isAnnotationPresent("RestController")) {
                 currentMethod = md;
             }
         });
 
+        scheduler = new BranchScheduler(md);
         try {
             NodeList<Statement> statements = md.getBody().get().getStatements();
-            for (int i = 0; i < statements.size(); i++) {
+            for (int i = 0; i < statements.size() && !scheduler.isOutOfBudget(); i++) {
                 Statement st = statements.get(i);
-                if (!lines.containsKey(st.hashCode())) {
-                    mockURIVariables(md);
-                    super.executeMethod(md);
+                if (!context.getCoverage().contains(st)) {
+                    run(md, i, null);
                     if (returnFrom != null) {
                         // rewind!
 
@@ -142,9 +192,101 @@ public class SpringEvaluator extends Evaluator {
                     }
                 }
             }
+            for (BranchScheduler.Branch branch = scheduler.next(); branch != null; branch = scheduler.next()) {
+                run(md, topLevelIndex(statements, branch.statement()) + 1, branch);
+            }
         } catch (Exception e) {
             throw new EvaluatorException("Error while mocking controller arguments", e);
+        } finally {
+            scheduler.report();
+        }
+    }
+
+    /**
+     * Evaluate the method once more.
+     * @param md the method being visited
+     * @param index the position of the first top level statement that we would like to reach
+     * @param branch the branch that we are trying to take, may be null
+     */
+    private void run(MethodDeclaration md, int index, BranchScheduler.Branch branch) throws AntikytheraException, ReflectiveOperationException {
+        if (branch != null) {
+            force(branch.statement(), branch.state());
+        }
+        try {
+            if (!resume(md, index)) {
+                mockURIVariables(md);
+                super.executeMethod(md);
+            }
+        } finally {
+            forced.clear();
+        }
+        scheduler.finished(branch);
+    }
+
+    /**
+     * Arrange for an if statement to go a particular way during the next run.
+     * The if statements that it is nested in are sent the way that leads to it, otherwise one
+     * that has already been covered could keep us from getting there.
+     * @param ifst the if statement
+     * @param state the value that its condition should have
+     */
+    private void force(IfStmt ifst, boolean state) {
+        forced.put(ifst, state);
+        Node child = ifst;
+        for (Node parent = ifst.getParentNode().orElse(null); parent != null; parent = parent.getParentNode().orElse(null)) {
+            if (parent instanceof IfStmt outer) {
+                forced.putIfAbsent(outer, outer.getThenStmt() == child);
+            }
+            child = parent;
+        }
+    }
+
+    /**
+     * Find the top level statement of the method that contains the given node.
+     * @param statements the statements in the body of the method
+     * @param node a node somewhere within the method
+     * @return the position of the statement in the body
+     */
+    private static int topLevelIndex(NodeList<Statement> statements, Node node) {
+        Node n = node;
+        while (n != null) {
+            for (int i = 0; i < statements.size(); i++) {
+                if (statements.get(i) == n) {
+                    return i;
+                }
+            }
+            n = n.getParentNode().orElse(null);
         }
+        return 0;
+    }
+
+    /**
+     * Go back to the last checkpoint before the given statement and carry on from there.
+     *
+     * A statement in the body of the method is not reached when an earlier if statement sends us
+     * elsewhere, usually to a return. Everything before that if statement has already been
+     * covered, so there is no need to evaluate it again, including any queries that it makes.
+     * The if statement is GREY by now, so executing it again applies the preconditions that
+     * take the other branch.
+     *
+     * @param md the method being visited
+     * @param index the position of the statement that has not been reached
+     * @return true if a checkpoint was found and execution resumed from it
+     */
+    private boolean resume(MethodDeclaration md, int index) throws AntikytheraException, ReflectiveOperationException {
+        if (replayBody == null) {
+            return false;
+        }
+        NodeList<Statement> statements = replayBody.getStatements();
+        for (int j = Math.min(index, statements.size()) - 1; j >= 0; j--) {
+            Checkpoint checkpoint = checkpoints.get(statements.get(j));
+            if (checkpoint != null) {
+                restore(checkpoint);
+                resumeMethod(md, j);
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -183,14 +325,16 @@ public class SpringEvaluator extends Evaluator {
      */
     @Override
     void executeStatement(Statement stmt) throws Exception {
+        if (replayBody != null && stmt.isIfStmt() && !checkpoints.containsKey(stmt)
+                && stmt.getParentNode().orElse(null) == replayBody && canCheckpoint()) {
+            checkpoints.put(stmt, checkpoint());
+        }
         if(!stmt.isIfStmt()) {
-            boolean repo =  (stmt.isExpressionStmt() && isRepositoryMethod(stmt.asExpressionStmt()));
-
-            LineOfCode l = lines.get(stmt.hashCode());
+            LineOfCode l = context.getCoverage().get(stmt);
             if (l == null) {
-                l = new LineOfCode(stmt);
+                boolean repo =  (stmt.isExpressionStmt() && isRepositoryMethod(stmt.asExpressionStmt()));
+                l = context.getCoverage().add(stmt);
                 l.setColor(repo ? LineOfCode.GREY : LineOfCode.BLACK);
-                lines.put(stmt.hashCode(), l);
             }
             else {
                 l.setColor(LineOfCode.BLACK);
@@ -223,7 +367,10 @@ public class SpringEvaluator extends Evaluator {
         RepositoryParser repository = repositories.get(name);
         if(repository != null) {
             MethodDeclaration repoMethod = repository.findMethodDeclaration(methodCall);
-            RepositoryQuery q = repository.get(repoMethod);
+            RepositoryQuery q = queries.computeIfAbsent(repoMethod, m -> {
+                RepositoryQuery shared = repository.get(m);
+                return shared == null ? null : shared.copy();
+            });
 
             try {
                 /*
@@ -238,7 +385,7 @@ public class SpringEvaluator extends Evaluator {
                         q.getMethodArguments().add(new QueryMethodArgument(argument, i, evaluateExpression(argument)));
                     }
 
-                    repository.executeQuery(repoMethod);
+                    repository.executeQuery(q);
                     for(TestGenerator gen : generators) {
                         gen.setQuery(q);
                     }
@@ -283,7 +430,7 @@ public class SpringEvaluator extends Evaluator {
             return;
         }
         Type t = variable.getType().asClassOrInterfaceType();
-        String className = t.resolve().describe();
+        String className = AbstractCompiler.resolveSymbols(() -> t.resolve().describe());
 
         if (!className.startsWith("java.")) {
             CompilationUnit cu = AntikytheraRunTime.getCompilationUnit(className);
@@ -352,7 +499,7 @@ public class SpringEvaluator extends Evaluator {
      */
     private void buildPreconditions() {
         List<Expression> expressions = new ArrayList<>();
-        for (LineOfCode l : lines.values()) {
+        for (LineOfCode l : context.getCoverage().getLines()) {
             if(branching.contains(l.getStatement())) {
                 expressions.addAll(l.getPrecondition(false));
             }
@@ -424,12 +571,12 @@ public class SpringEvaluator extends Evaluator {
         if (parent.isPresent() && parent.get() instanceof FieldDeclaration fd
                 && fd.getAnnotationByName("Autowired").isPresent()) {
 
-            Variable v = AntikytheraRunTime.getAutoWire(resolvedClass);
+            Variable v = context.getAutoWire(resolvedClass);
             if (v == null) {
-                Evaluator eval = new SpringEvaluator(resolvedClass);
+                Evaluator eval = createEvaluator(resolvedClass);
                 CompilationUnit dependant = AntikytheraRunTime.getCompilationUnit(resolvedClass);
                 v = new Variable(eval);
-                AntikytheraRunTime.autoWire(resolvedClass, v);
+                context.autoWire(resolvedClass, v);
                 eval.setupFields(dependant);
             }
             fields.put(variable.getNameAsString(), v);
@@ -469,7 +616,7 @@ public class SpringEvaluator extends Evaluator {
 
     @Override
     public Evaluator createEvaluator(String name) {
-        return new SpringEvaluator(name);
+        return new SpringEvaluator(name, context);
     }
 
     /**
@@ -486,19 +633,23 @@ public class SpringEvaluator extends Evaluator {
             gen.setBranched(true);
         }
 
-        LineOfCode l = lines.get(ifst.hashCode());
+        Boolean state = forced.get(ifst);
+        if (state != null) {
+            return forcedBlock(ifst, state);
+        }
+
+        LineOfCode l = context.getCoverage().get(ifst);
         if (l == null) {
             /*
              * This if condition has never been executed before. First we will determine if the condition
              * evaluates to true or false. Then we will use the truth table to find out what values will
              * result in it going from true to false or false to true.
              */
-            l = new LineOfCode(ifst);
-            lines.put(ifst.hashCode(), l);
+            l = context.getCoverage().add(ifst);
             l.setColor(LineOfCode.GREY);
 
             branching.add(ifst);
-            Variable v = super.ifThenElseBlock(ifst);
+            Variable v = branch(ifst);
             if ((Boolean)v.getValue()) {
                 setupIfCondition(ifst, false);
             } else {
@@ -517,13 +668,19 @@ public class SpringEvaluator extends Evaluator {
                 l.setColor(LineOfCode.BLACK);
             }
             else {
-                return super.ifThenElseBlock(ifst);
+                return branch(ifst);
             }
         } else if (ifst.getElseStmt().isPresent()) {
-            l = lines.get(ifst.getElseStmt().get());
-            if (l == null || l.getColor() != LineOfCode.BLACK) {
-                l.setColor(LineOfCode.GREY);
-                return super.ifThenElseBlock(ifst);
+            /*
+             * Both branches of the condition have been taken, but the else branch may not have
+             * been covered all the way through. A block is never recorded itself, only the
+             * statements in it are.
+             */
+            Statement elseStmt = ifst.getElseStmt().get();
+            List<Statement> statements = elseStmt.isBlockStmt()
+                    ? elseStmt.asBlockStmt().getStatements() : List.of(elseStmt);
+            if (!checkStatements(statements)) {
+                return branch(ifst);
             }
         } else {
             l.setColor(LineOfCode.BLACK);
@@ -531,19 +688,65 @@ public class SpringEvaluator extends Evaluator {
         return null;
     }
 
+    /**
+     * Execute an if statement that the current run has been scheduled to send one way.
+     * The values from the truth table of the condition are applied first, just as the
+     * preconditions are when an if statement is visited for the second time.
+     * @param ifst the if statement
+     * @param state the value that the condition should have
+     * @return the value of the condition
+     */
+    private Variable forcedBlock(IfStmt ifst, boolean state) throws Exception {
+        if (context.getCoverage().get(ifst) == null) {
+            context.getCoverage().add(ifst).setColor(LineOfCode.GREY);
+            branching.add(ifst);
+            setupIfCondition(ifst, !state);
+        }
+        for (Expression precondition : findPreconditions(ifst, state)) {
+            evaluateExpression(precondition);
+        }
+        return branch(ifst);
+    }
+
+    /**
+     * Execute the if statement and tell the scheduler which way it went.
+     * @param ifst the if statement
+     * @return the value of the condition
+     */
+    private Variable branch(IfStmt ifst) throws Exception {
+        Variable v = super.ifThenElseBlock(ifst);
+        if (scheduler != null && v != null && v.getValue() instanceof Boolean b) {
+            scheduler.taken(ifst, b);
+        }
+        return v;
+    }
+
     /**
      * Setup an if condition so that it will evaluate to true or false in future executions.
      * @param ifst the if statement to mess with
      * @param state the desired state.
      */
     private void setupIfCondition(IfStmt ifst, boolean state) throws AntikytheraException, ReflectiveOperationException {
-        TruthTable tt = new TruthTable(ifst.getCondition());
+        LineOfCode l = context.getCoverage().get(ifst);
+        for (Expression setter : findPreconditions(ifst, state)) {
+            l.addPrecondition(setter, state);
+        }
+    }
 
-        LineOfCode l = lines.get(ifst.hashCode());
-        List<Map<Expression, Object>> values = tt.findValuesForCondition(state);
+    /**
+     * Use the truth table of the condition to find the setters that will make it evaluate to the
+     * given state.
+     * @param ifst the if statement
+     * @param state the desired state
+     * @return the setter calls, to be evaluated just before the condition
+     */
+    private List<Expression> findPreconditions(IfStmt ifst, boolean state) throws AntikytheraException, ReflectiveOperationException {
+        List<Expression> setters = new ArrayList<>();
+        TruthTable tt = new TruthTable(ifst.getCondition());
+        Optional<Map<Expression, Object>> values = tt.findFirstValuesForCondition(state);
 
-        if (!values.isEmpty()) {
-            Map<Expression, Object> value = values.getFirst();
+        if (values.isPresent()) {
+            Map<Expression, Object> value = values.get();
             for (var entry : value.entrySet()) {
                 if(entry.getKey().isMethodCallExpr()) {
                     MethodCallExpr mce = entry.getKey().asMethodCallExpr();
@@ -561,7 +764,7 @@ public class SpringEvaluator extends Evaluator {
                                  * The only other possibility is static access on a class
                                  */
                                 try {
-                                    Class<?> clazz = Class.forName(fullname);
+                                    Class<?> clazz = ClassCache.forName(fullname);
 
                                 } catch (ReflectiveOperationException e) {
                                     /*
@@ -579,23 +782,28 @@ public class SpringEvaluator extends Evaluator {
                             setter.setScope(expr);
                             Variable field = eval.getFields().get(ClassProcessor.classToInstanceName(name));
 
-                            setter.addArgument(
-                                    switch (field.getType().asString()) {
-                                        case "String" -> "\"Hello\"";
-                                        case "int", "Integer" -> "0";
-                                        case "long", "Long" -> "0L";
-                                        case "float", "Float" -> "0.0f";
-                                        case "double", "Double" -> "0.0";
-                                        case "boolean", "Boolean" -> "false";
-                                        default -> "null";
-                                    }
-                            );
-                            l.addPrecondition(setter, state);
+                            if (entry.getValue() == null && !field.getType().isPrimitiveType()) {
+                                setter.addArgument("null");
+                            } else {
+                                setter.addArgument(
+                                        switch (field.getType().asString()) {
+                                            case "String" -> "\"Hello\"";
+                                            case "int", "Integer" -> "0";
+                                            case "long", "Long" -> "0L";
+                                            case "float", "Float" -> "0.0f";
+                                            case "double", "Double" -> "0.0";
+                                            case "boolean", "Boolean" -> "false";
+                                            default -> "null";
+                                        }
+                                );
+                            }
+                            setters.add(setter);
                         }
                     }
                 }
             }
         }
+        return setters;
     }
 
     /**
@@ -622,7 +830,7 @@ public class SpringEvaluator extends Evaluator {
      * @return
      */
     public boolean allVisited(IfStmt stmt) {
-        LineOfCode l = lines.get(stmt.hashCode());
+        LineOfCode l = context.getCoverage().get(stmt);
         if (l == null) {
             return false;
         }
@@ -660,15 +868,11 @@ public class SpringEvaluator extends Evaluator {
      * @return
      */
     private boolean isLineVisited(Statement stmt) {
-        LineOfCode l = lines.get(stmt.hashCode());
-        if (l == null) {
-            return false;
-        }
-        return l.getColor() == LineOfCode.BLACK;
+        return context.getCoverage().isBlack(stmt);
     }
 
     public void resetColors() {
-        lines.clear();
+        context.getCoverage().clear();
     }
 
     /**
@@ -820,7 +1024,7 @@ public class SpringEvaluator extends Evaluator {
                 /*
                  * We have found the expression statement corresponding to this query
                  */
-                return lines.get(stmt.hashCode());
+                return context.getCoverage().get(stmt);
             }
             n = n.getParentNode().orElse(null);
         }
@@ -4,6 +4,21 @@ import com.github.javaparser.ast.expr.Expression;
 import com.github.javaparser.ast.type.Type;
 
 public class Variable {
+    /**
+     * Shared results of conditions and comparisons.
+     */
+    public static final Variable TRUE = constant(null, Boolean.TRUE);
+    public static final Variable FALSE = constant(null, Boolean.FALSE);
+
+    private static final int SMALL_INT_MIN = -128;
+    private static final int SMALL_INT_MAX = 1024;
+    private static final Variable[] SMALL_INTS = new Variable[SMALL_INT_MAX - SMALL_INT_MIN + 1];
+    static {
+        for (int i = SMALL_INT_MIN; i <= SMALL_INT_MAX; i++) {
+            SMALL_INTS[i - SMALL_INT_MIN] = constant(null, i);
+        }
+    }
+
     /**
      * Represents a java parser type
      */
@@ -29,6 +44,11 @@ public class Variable {
      */
     private boolean primitive;
 
+    /**
+     * True if this instance is shared and therefore cannot be modified.
+     */
+    private boolean constant;
+
     /**
      * Create an object having the given value and java parser type.
      * @param type the identified java parser type
@@ -60,6 +80,67 @@ public class Variable {
         }
     }
 
+    /**
+     * Creates an instance that can be shared because it can never be modified.
+     * Such instances need to be copied before they are stored as a local or a field.
+     * @param type the identified java parser type, may be null
+     * @param value the value to hold
+     * @return an immutable variable
+     */
+    public static Variable constant(Type type, Object value) {
+        Variable v = type == null ? new Variable(value) : new Variable(type, value);
+        v.constant = true;
+        return v;
+    }
+
+    /**
+     * @param b a boolean
+     * @return one of the shared TRUE or FALSE instances
+     */
+    public static Variable of(boolean b) {
+        return b ? TRUE : FALSE;
+    }
+
+    /**
+     * @param i an int
+     * @return a constant holding the int, shared if the value is small
+     */
+    public static Variable of(int i) {
+        if (i >= SMALL_INT_MIN && i <= SMALL_INT_MAX) {
+            return SMALL_INTS[i - SMALL_INT_MIN];
+        }
+        return constant(null, i);
+    }
+
+    /**
+     * @return a modifiable copy of this variable
+     */
+    public Variable copy() {
+        Variable v = new Variable(value);
+        v.type = type;
+        v.clazz = clazz;
+        v.initializer = initializer;
+        v.primitive = primitive;
+        return v;
+    }
+
+    /**
+     * @return this instance if it can be modified, otherwise a copy of it.
+     */
+    public Variable modifiable() {
+        return constant ? copy() : this;
+    }
+
+    public boolean isConstant() {
+        return constant;
+    }
+
+    private void checkModifiable() {
+        if (constant) {
+            throw new IllegalStateException("Constant " + this + " cannot be modified");
+        }
+    }
+
     public Type getType() {
         return type;
     }
@@ -69,6 +150,7 @@ public class Variable {
     }
 
     public void setValue(Object value) {
+        checkModifiable();
         this.value = value;
         if (value != null) {
             clazz = value.getClass();
@@ -76,6 +158,7 @@ public class Variable {
     }
 
     public void setType(Type type) {
+        checkModifiable();
         this.type = type;
         if (this.clazz == null) {
             this.clazz = switch (type.asString()) {
@@ -100,6 +183,7 @@ public class Variable {
     }
 
     public void setPrimitive(boolean primitive) {
+        checkModifiable();
         this.primitive = primitive;
     }
 
@@ -112,6 +196,7 @@ public class Variable {
     }
 
     public void setClazz(Class<?> clazz) {
+        checkModifiable();
         this.clazz = clazz;
     }
 
@@ -120,6 +205,7 @@ public class Variable {
     }
 
     public void setInitializer(Expression initializer) {
+        checkModifiable();
         this.initializer = initializer;
     }
 }
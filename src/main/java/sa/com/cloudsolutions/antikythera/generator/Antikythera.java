@@ -5,12 +5,15 @@ import org.slf4j.LoggerFactory;
 import sa.com.cloudsolutions.antikythera.exception.EvaluatorException;
 import sa.com.cloudsolutions.antikythera.configuration.Settings;
 import sa.com.cloudsolutions.antikythera.constants.Constants;
+import sa.com.cloudsolutions.antikythera.evaluator.LoopBudget;
+import sa.com.cloudsolutions.antikythera.evaluator.ReflectionCache;
 import org.apache.maven.model.Dependency;
 import org.apache.maven.model.Model;
 import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
 import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
 import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
+import sa.com.cloudsolutions.antikythera.parser.ClassCache;
 import sa.com.cloudsolutions.antikythera.parser.RestControllerParser;
 
 import java.io.*;
@@ -48,7 +51,7 @@ public class Antikythera {
         controllers = Settings.getProperty(Constants.CONTROLLERS).toString();
     }
 
-    public static Antikythera getInstance() throws IOException {
+    public static synchronized Antikythera getInstance() throws IOException {
         if (instance == null) {
             Settings.loadConfigMap();
 
@@ -198,6 +201,9 @@ public class Antikythera {
 
         AbstractCompiler.preProcess();
 
+        GenerationManifest manifest = GenerationManifest.load();
+        RestControllerParser.setManifest(manifest);
+
         String controllersCleaned = controllers.split("#")[0];
         if (controllersCleaned.matches(".*\\.java$")) {
             Path path = Paths.get(basePath, controllersCleaned.replace(".", "/").replace("/java", SUFFIX));
@@ -208,17 +214,26 @@ public class Antikythera {
             RestControllerParser processor = new RestControllerParser(path.toFile());
             processor.start();
         }
+
+        if (manifest != null) {
+            manifest.save();
+        }
     }
 
-    public void writeFilesToTest(String belongingPackage, String filename, String content) throws IOException {
+    /**
+     * Find where the test class with the given name will be written.
+     * @param belongingPackage the package of the test class
+     * @param filename the name of the file including the .java suffix
+     * @return the file
+     */
+    public File getTestFile(String belongingPackage, String filename) {
         String filePath = outputPath + File.separator + SRC + File.separator + "test" + File.separator + "java"
                 + File.separator + belongingPackage.replace(".", File.separator) + File.separator + filename;
-        File file = new File(filePath);
-        File parentDir = file.getParentFile();
-        Files.createDirectories(parentDir.toPath());
-        try (FileWriter writer = new FileWriter(file)) {
-            writer.write(content);
-        }
+        return new File(filePath);
+    }
+
+    public void writeFilesToTest(String belongingPackage, String filename, String content) throws IOException {
+        CopyUtils.writeAtomically(getTestFile(belongingPackage, filename).toPath(), content);
     }
 
     public static void main(String[] args) throws IOException, XmlPullParserException, EvaluatorException {
@@ -228,5 +243,12 @@ public class Antikythera {
         logger.info("Processed {} controllers", stats.getControllers());
         logger.info("Processed {} methods", stats.getMethods());
         logger.info("Generated {} tests", stats.getTests());
+        logger.info("Loaded {} classes by name in {} ms, {} could not be found, {} lookups were cached",
+                ClassCache.getLoads(), ClassCache.getLoadTime(), ClassCache.getFailures(), ClassCache.getHits());
+        logger.info("Reflective lookups: {} cached, {} searched",
+                ReflectionCache.getHits(), ReflectionCache.getMisses());
+        logger.info("Ran {} loops for {} iterations, {} ended by the loop limit, {} by the method limit, {} by the time limit, {} by the method time limit",
+                LoopBudget.getLoops(), LoopBudget.getIterations(), LoopBudget.getLoopLimitHits(),
+                LoopBudget.getMethodLimitHits(), LoopBudget.getTimeLimitHits(), LoopBudget.getMethodTimeLimitHits());
     }
 }
@@ -4,10 +4,11 @@ import sa.com.cloudsolutions.antikythera.configuration.Settings;
 import sa.com.cloudsolutions.antikythera.constants.Constants;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 
 public class CopyUtils {
     public static final String SRC = "src";
@@ -31,13 +32,26 @@ public class CopyUtils {
                 File.separator + SRC + File.separator + "main" + File.separator + "java" +
                 File.separator + relativePath;
 
-        File file = new File(filePath);
-        File parentDir = file.getParentFile();
-        Files.createDirectories(parentDir.toPath());
-        try (FileWriter writer = new FileWriter(file)) {
-            writer.write(content);
-        }
+        writeAtomically(Paths.get(filePath), content);
     }
 
+    /**
+     * Writes the content to a temporary file in the same folder and then moves it into place.
+     * Readers will never see a partially written file, even when several threads are writing.
+     * @param path the file to write to
+     * @param content the content to write
+     * @throws IOException if the file could not be written
+     */
+    public static void writeAtomically(Path path, String content) throws IOException {
+        Path parentDir = path.getParent();
+        Files.createDirectories(parentDir);
+        Path temp = Files.createTempFile(parentDir, path.getFileName().toString(), ".tmp");
+        try {
+            Files.writeString(temp, content);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
 
 }
@@ -0,0 +1,290 @@
+package sa.com.cloudsolutions.antikythera.generator;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.constants.Constants;
+import sa.com.cloudsolutions.antikythera.depsolver.ClassDependency;
+import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
+import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
+import sa.com.cloudsolutions.antikythera.parser.SourceIndex;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Remembers what the previous run of the generator looked at so that the next run only needs to
+ * regenerate the tests for controllers that may have been affected by a change.
+ *
+ * The manifest is kept in the output folder. It contains a content hash for every source file
+ * under the base path and, for every controller that was processed, the set of classes from the
+ * application under test that the controller depends on. A controller is considered up to date when
+ * none of those classes has changed and the test file generated for it still exists.
+ *
+ * The work is done at the level of the controller because a single test class is written for all
+ * the methods in a controller.
+ *
+ * Incremental generation is enabled with the incremental setting.
+ */
+public class GenerationManifest {
+    private static final Logger logger = LoggerFactory.getLogger(GenerationManifest.class);
+
+    public static final String INCREMENTAL = "incremental";
+    public static final String FILE_NAME = "antikythera-manifest.json";
+    private static final int VERSION = 1;
+
+    private static final ObjectMapper mapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final Path location;
+    private final Document previous;
+    private final Document current = new Document();
+    /**
+     * Classes that have been modified, added or removed since the last run.
+     */
+    private final Set<String> changed = new HashSet<>();
+
+    private GenerationManifest(Path location, Document previous) {
+        this.location = location;
+        this.previous = previous;
+        current.version = VERSION;
+        current.basePath = Settings.getBasePath();
+    }
+
+    /**
+     * Loads the manifest of the previous run and works out which classes have changed since.
+     * This should be called after pre processing so that newly added classes can be inspected.
+     * @return the manifest or null if incremental generation has not been enabled.
+     * @throws IOException if the source files cannot be read
+     */
+    public static GenerationManifest load() throws IOException {
+        if (!Settings.getProperty(INCREMENTAL, Boolean.class).orElse(false)) {
+            return null;
+        }
+        Path location = Paths.get(Settings.getProperty(Constants.OUTPUT_PATH).toString(), FILE_NAME);
+        Document previous = null;
+        if (Files.exists(location)) {
+            try {
+                previous = mapper.readValue(location.toFile(), Document.class);
+                if (previous.version != VERSION || !Settings.getBasePath().equals(previous.basePath)) {
+                    previous = null;
+                }
+            } catch (IOException e) {
+                logger.warn("Ignoring unreadable manifest {}", location);
+            }
+        }
+        GenerationManifest manifest = new GenerationManifest(location, previous);
+        manifest.findChanges();
+        return manifest;
+    }
+
+    private void findChanges() throws IOException {
+        Path basePath = Paths.get(Settings.getBasePath());
+        Map<String, FileState> before = previous == null ? Map.of() : previous.files;
+        for (String relativePath : SourceIndex.getSources()) {
+            FileState old = before.get(relativePath);
+            FileState state = FileState.of(basePath.resolve(relativePath), old);
+            current.files.put(relativePath, state);
+
+            if (old == null) {
+                String className = AbstractCompiler.pathToClass(relativePath);
+                changed.add(className);
+                if (previous != null) {
+                    addSuperTypes(className);
+                }
+            } else if (!old.hash.equals(state.hash)) {
+                changed.add(AbstractCompiler.pathToClass(relativePath));
+            }
+        }
+        for (String relativePath : before.keySet()) {
+            if (!current.files.containsKey(relativePath)) {
+                changed.add(AbstractCompiler.pathToClass(relativePath));
+            }
+        }
+        logger.info("{} classes changed since the last run", changed.size());
+    }
+
+    /**
+     * A class that did not exist before may be the new implementation of an interface, so any
+     * controller that depends on its parents also needs to be regenerated.
+     */
+    private void addSuperTypes(String className) {
+        CompilationUnit cu = AntikytheraRunTime.getCompilationUnit(className);
+        if (cu == null) {
+            return;
+        }
+        for (TypeDeclaration<?> type : cu.getTypes()) {
+            if (type.isClassOrInterfaceDeclaration()) {
+                var cdecl = type.asClassOrInterfaceDeclaration();
+                for (ClassOrInterfaceType t : cdecl.getExtendedTypes()) {
+                    addIfResolved(cu, t.getNameAsString(), changed);
+                }
+                for (ClassOrInterfaceType t : cdecl.getImplementedTypes()) {
+                    addIfResolved(cu, t.getNameAsString(), changed);
+                }
+            }
+        }
+    }
+
+    private static void addIfResolved(CompilationUnit cu, String name, Set<String> target) {
+        String fqn = AbstractCompiler.findFullyQualifiedName(cu, name);
+        if (fqn != null) {
+            target.add(fqn);
+        }
+    }
+
+    /**
+     * Checks whether the tests for a controller need to be generated again.
+     * When the controller is up to date, the record from the previous run is carried forward.
+     *
+     * @param controller the fully qualified name of the controller
+     * @param testFile the path to the test class that was generated for this controller
+     * @return true if the previously generated test can be kept.
+     */
+    public synchronized boolean isUpToDate(String controller, Path testFile) {
+        if (previous == null || !Files.exists(testFile)) {
+            return false;
+        }
+        Set<String> closure = previous.controllers.get(controller);
+        if (closure == null || closure.stream().anyMatch(changed::contains)) {
+            return false;
+        }
+        current.controllers.put(controller, closure);
+        return true;
+    }
+
+    /**
+     * Records the classes that a controller depends on.
+     *
+     * The edges found by the class processor are followed, together with every type that is named
+     * in the source code of a class and the implementations of interfaces. Only classes that belong
+     * to the application under test are included.
+     *
+     * @param controller the fully qualified name of the controller
+     * @param dependencies the dependency graph built by the class processor
+     */
+    public synchronized void record(String controller, Map<String, Set<ClassDependency>> dependencies) {
+        Set<String> closure = new TreeSet<>();
+        Deque<String> work = new ArrayDeque<>();
+        work.add(controller);
+
+        while (!work.isEmpty()) {
+            String name = work.pop();
+            if (closure.contains(name)) {
+                continue;
+            }
+            CompilationUnit cu = AntikytheraRunTime.getCompilationUnit(name);
+            if (cu == null) {
+                continue;
+            }
+            closure.add(name);
+
+            for (ClassDependency dependency : dependencies.getOrDefault(name, Set.of())) {
+                work.add(dependency.getTo());
+            }
+            Set<String> names = new HashSet<>();
+            for (ClassOrInterfaceType t : cu.findAll(ClassOrInterfaceType.class)) {
+                if (names.add(t.getNameAsString())) {
+                    String fqn = AbstractCompiler.findFullyQualifiedName(cu, t.getNameAsString());
+                    if (fqn != null && !closure.contains(fqn)) {
+                        work.add(fqn);
+                    }
+                }
+            }
+            work.addAll(AntikytheraRunTime.findImplementations(name));
+        }
+        current.controllers.put(controller, closure);
+    }
+
+    /**
+     * Writes the manifest to the output folder.
+     *
+     * Controllers that were not looked at during this run keep the record from the previous run,
+     * unless one of the classes that they depend on has changed or the controller itself is gone.
+     * Those are left out so that the next run generates their tests again.
+     *
+     * @throws IOException if the manifest could not be written.
+     */
+    public synchronized void save() throws IOException {
+        if (previous != null) {
+            for (Map.Entry<String, Set<String>> entry : previous.controllers.entrySet()) {
+                String controller = entry.getKey();
+                if (!current.controllers.containsKey(controller)
+                        && current.files.containsKey(AbstractCompiler.classToPath(controller))
+                        && entry.getValue().stream().noneMatch(changed::contains)) {
+                    current.controllers.put(controller, entry.getValue());
+                }
+            }
+        }
+        Files.createDirectories(location.getParent());
+        Path temp = Files.createTempFile(location.getParent(), FILE_NAME, ".tmp");
+        mapper.writerWithDefaultPrettyPrinter().writeValue(temp.toFile(), current);
+        Files.move(temp, location, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public Set<String> getChanged() {
+        return changed;
+    }
+
+    /**
+     * The top level object in the manifest file.
+     */
+    public static class Document {
+        public int version;
+        public String basePath;
+        public Map<String, FileState> files = new TreeMap<>();
+        public Map<String, Set<String>> controllers = new TreeMap<>();
+    }
+
+    /**
+     * The state of a single source file.
+     * The size and the last modified time are used to avoid hashing files that have not been touched.
+     */
+    public static class FileState {
+        public long size;
+        public long lastModified;
+        public String hash;
+
+        static FileState of(Path path, FileState old) throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            FileState state = new FileState();
+            state.size = attributes.size();
+            state.lastModified = attributes.lastModifiedTime().toMillis();
+            if (old != null && old.size == state.size && old.lastModified == state.lastModified) {
+                state.hash = old.hash;
+            }
+            else {
+                state.hash = hash(path);
+            }
+            return state;
+        }
+
+        private static String hash(Path path) throws IOException {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                return HexFormat.of().formatHex(digest.digest(Files.readAllBytes(path)));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
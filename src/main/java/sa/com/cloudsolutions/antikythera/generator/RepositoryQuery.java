@@ -108,6 +108,27 @@ public class RepositoryQuery {
         methodArguments = new ArrayList<>();
     }
 
+    /**
+     * Make a copy of this query for use by one evaluation.
+     *
+     * The parsed statements and the parameters are set up when the repository is processed and
+     * are shared with the copy. The arguments and the result sets are filled in while the query
+     * is being executed, so the copy starts without any.
+     * @return a query that can be executed without affecting this one
+     */
+    public RepositoryQuery copy() {
+        RepositoryQuery copy = new RepositoryQuery();
+        copy.isNative = isNative;
+        copy.methodDeclaration = methodDeclaration;
+        copy.methodParameters.addAll(methodParameters);
+        copy.entityType = entityType;
+        copy.table = table;
+        copy.statement = statement;
+        copy.simplifiedStatement = simplifiedStatement;
+        copy.originalQuery = originalQuery;
+        return copy;
+    }
+
     public boolean isNative() {
         return isNative;
     }
@@ -116,6 +137,10 @@ public class RepositoryQuery {
         return statement.toString();
     }
 
+    public MethodDeclaration getMethodDeclaration() {
+        return methodDeclaration;
+    }
+
     public void setMethodDeclaration(MethodDeclaration methodDeclaration) {
         this.methodDeclaration = methodDeclaration;
         for (int i = 0; i < methodDeclaration.getParameters().size(); i++) {
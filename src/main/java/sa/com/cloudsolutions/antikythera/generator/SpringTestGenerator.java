@@ -5,6 +5,8 @@ import org.springframework.http.ResponseEntity;
 import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
 
 import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.DataKey;
+import com.github.javaparser.ast.ImportDeclaration;
 import com.github.javaparser.ast.NodeList;
 
 import com.github.javaparser.ast.body.MethodDeclaration;
@@ -79,8 +81,13 @@ public class SpringTestGenerator implements  TestGenerator {
      * tests for the same method.
      */
     Set<String> testMethodNames = new HashSet<>();
+
+    /**
+     * The name that a test method was given before a suffix was added to make it unique.
+     */
+    private static final DataKey<String> BASE_NAME = new DataKey<>() {};
     /**
-     * The last executed database query.
+     * The last database query executed by the end point being visited.
      */
     RepositoryQuery query;
     /**
@@ -124,7 +131,7 @@ public class SpringTestGenerator implements  TestGenerator {
      */
     @Override
     public void createTests(MethodDeclaration md, ControllerResponse controllerResponse) {
-        RestControllerParser.getStats().setTests(RestControllerParser.getStats().getTests() + 1);
+        RestControllerParser.getStats().incrementTests();
         for (AnnotationExpr annotation : md.getAnnotations()) {
             if (annotation.getNameAsString().equals("GetMapping") ) {
                 buildGetMethodTests(md, annotation, controllerResponse);
@@ -507,11 +514,8 @@ public class SpringTestGenerator implements  TestGenerator {
 
         }
 
-        if (testMethodNames.contains(testName)) {
-            testName += "_" + (char)('A' + testMethodNames.size()  % 26 -1);
-        }
-        testMethodNames.add(testName);
-        testMethod.setName(testName);
+        testMethod.setData(BASE_NAME, testName);
+        testMethod.setName(uniqueName(testName));
 
         BlockStmt body = new BlockStmt();
 
@@ -611,6 +615,37 @@ public class SpringTestGenerator implements  TestGenerator {
         return null;
     }
 
+    private String uniqueName(String testName) {
+        if (testMethodNames.contains(testName)) {
+            testName += "_" + (char)('A' + testMethodNames.size()  % 26 -1);
+        }
+        testMethodNames.add(testName);
+        return testName;
+    }
+
+    /**
+     * Moves the tests written by another generator into the test class of this one.
+     *
+     * The test methods are renamed as if they had been written by this generator, so merging the
+     * generators of several end points in the order in which the end points are declared gives
+     * the same names as generating all the tests with one generator. The query is not carried
+     * over because it only belongs to the end point that executed it.
+     *
+     * @param other a generator whose compilation unit has a single test class
+     */
+    public void merge(SpringTestGenerator other) {
+        for (MethodDeclaration testMethod : other.gen.getType(0).getMethods()) {
+            testMethod.remove();
+            String testName = testMethod.containsData(BASE_NAME)
+                    ? testMethod.getData(BASE_NAME) : testMethod.getNameAsString();
+            testMethod.setName(uniqueName(testName));
+            gen.getType(0).addMember(testMethod);
+        }
+        for (ImportDeclaration imp : other.gen.getImports()) {
+            gen.addImport(imp.clone());
+        }
+    }
+
     public void setCommonPath(String commonPath) {
         this.commonPath = commonPath;
     }
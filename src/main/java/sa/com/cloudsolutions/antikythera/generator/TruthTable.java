@@ -11,11 +11,13 @@ import com.github.javaparser.ast.expr.MethodCallExpr;
 import com.github.javaparser.ast.expr.NameExpr;
 import com.github.javaparser.ast.expr.NullLiteralExpr;
 import com.github.javaparser.ast.expr.StringLiteralExpr;
+import com.github.javaparser.ast.expr.UnaryExpr;
 import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
 import com.github.javaparser.utils.Pair;
 
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -32,6 +34,12 @@ import java.util.Set;
  *
  * The values assigned may have its domain in Strings, Boolean or any other objects. This
  * implementation will only consider Numeric, Boolean and String expressions.
+ *
+ * Each variable has two possible values, so a row of the table is a number in which bit j says
+ * which of the two values variable j takes. The condition is compiled once into a tree of
+ * closures that read the values from those bits, and the outcome for each row is kept in a bit
+ * set. Rows are only turned into maps when they are asked for, which keeps conditions with a
+ * dozen or more variables from filling up the memory.
  */
 public class TruthTable {
     public static final NameExpr RESULT = new NameExpr("Result");
@@ -52,10 +60,45 @@ public class TruthTable {
     private final Set<Expression> conditions;
 
     /**
-     * The matrix of values for the variables and the result of the condition
+     * The variables in the order of the bits that represent them in a row.
+     */
+    private Expression[] variableList;
+
+    /**
+     * The position of each variable in the variableList.
+     */
+    private final Map<Expression, Integer> positions = new HashMap<>();
+
+    /**
+     * The value of each variable when its bit is set and when it is clear.
+     */
+    private Object[] whenSet;
+    private Object[] whenClear;
+
+    /**
+     * The number of rows in the table.
+     */
+    private int numRows;
+
+    /**
+     * The rows for which the condition is true.
+     */
+    private BitSet results;
+
+    /**
+     * The matrix of values for the variables and the result of the condition, only built when
+     * someone asks for it.
      */
     private List<Map<Expression, Object>> table;
 
+    /**
+     * The condition compiled to work on the bits of a row.
+     */
+    @FunctionalInterface
+    private interface Term {
+        Object evaluate(long row);
+    }
+
     /**
      * Create a new truth table for the given condition represented as a string
      * @param conditionCode the condition as string
@@ -127,39 +170,54 @@ public class TruthTable {
      * Generates a truth table for the given condition.
      */
     private void generateTruthTable() {
-        Expression[] variableList = variables.keySet().toArray(new Expression[0]);
-        int numRows = (int) Math.pow(2, variableList.length);
-
-        table = new ArrayList<>();
+        variableList = variables.keySet().toArray(new Expression[0]);
+        if (variableList.length > 30) {
+            throw new UnsupportedOperationException("Too many variables in condition: " + condition);
+        }
+        numRows = 1 << variableList.length;
+
+        whenSet = new Object[variableList.length];
+        whenClear = new Object[variableList.length];
+        for (int j = 0; j < variableList.length; j++) {
+            Pair<Object, Object> bounds = variables.get(variableList[j]);
+            positions.put(variableList[j], j);
+            whenSet[j] = bounds.a != null ? bounds.a : bounds.b;
+            whenClear[j] = bounds.a != null ? bounds.b : null;
+        }
 
+        Term term = compileCondition(condition);
+        results = new BitSet(numRows);
         for (int i = 0; i < numRows; i++) {
-            Map<Expression, Object> truthValues = new HashMap<>();
-            for (int j = 0; j < variableList.length; j++) {
-                Expression variable = variableList[j];
-                Pair<Object, Object> bounds = variables.get(variable);
-
-                boolean value = (i & (1 << j)) != 0;
-                if (value) {
-                    if (bounds.a != null) {
-                        truthValues.put(variable, bounds.a);
-                    } else {
-                        truthValues.put(variable, bounds.b);
-                    }
-                }
-                else {
-                    if (bounds.a != null) {
-                        truthValues.put(variable, bounds.b);
-                    } else {
-                        truthValues.put(variable, null);
-                    }
-                }
-
+            if (isTrue(term.evaluate(i))) {
+                results.set(i);
             }
-            Object result = evaluateCondition(condition, truthValues);
+        }
+    }
+
+    /**
+     * The value that a variable has in the given row.
+     * @param position the position of the variable or null if the expression is not a variable
+     * @param row the row
+     * @return the value of the variable, null for expressions that are not variables
+     */
+    private Object valueOf(Integer position, long row) {
+        if (position == null) {
+            return null;
+        }
+        return (row & (1L << position)) != 0 ? whenSet[position] : whenClear[position];
+    }
 
-            truthValues.put(RESULT, isTrue(result));
-            table.add(truthValues);
+    /**
+     * Build the map of values for a row.
+     * @param row the row
+     * @return the value of each variable
+     */
+    private Map<Expression, Object> rowValues(int row) {
+        Map<Expression, Object> values = new HashMap<>();
+        for (int j = 0; j < variableList.length; j++) {
+            values.put(variableList[j], valueOf(j, row));
         }
+        return values;
     }
 
     public static boolean isTrue(Object o) {
@@ -185,6 +243,7 @@ public class TruthTable {
     private void writeTruthTable(PrintStream out) {
         out.println("Truth Table for condition: " + condition);
 
+        List<Map<Expression, Object>> table = getTable();
         if (!table.isEmpty()) {
             Map<Expression, Object> firstRow = table.get(0);
             final String FORMAT = "%-11s";
@@ -228,9 +287,7 @@ public class TruthTable {
         String state = desiredState ? "true" : "false";
         out.println("\nValues to make the condition " + state + " for: " + condition);
 
-        List<Map<Expression, Object>> values = findValuesForCondition(desiredState);
-
-        values.stream().findFirst().ifPresentOrElse(
+        findFirstValuesForCondition(desiredState).ifPresentOrElse(
                 row -> {
                     // Sort the keys alphabetically
                     List<String> sortedKeys = row.keySet().stream()
@@ -255,129 +312,202 @@ public class TruthTable {
      */
     public List<Map<Expression, Object>> findValuesForCondition(boolean desiredState) {
         List<Map<Expression, Object>> result = new ArrayList<>();
-
-        for (Map<Expression, Object> row : table) {
-            if ((boolean) row.get(RESULT) == desiredState) {
-                Map<Expression, Object> copy = new HashMap<>();
-                for (Map.Entry<Expression, Object> entry : row.entrySet()) {
-                    if (!entry.getKey().equals(RESULT)) {
-                        copy.put(entry.getKey(), entry.getValue());
-                    }
-                }
-                result.add(copy);
-            }
+        for (int row = nextRow(0, desiredState); row < numRows; row = nextRow(row + 1, desiredState)) {
+            result.add(rowValues(row));
         }
-
         return result;
     }
 
     /**
-     * Evaluates the given condition with the provided truth values.
+     * Find the first combination of values that makes the condition true or false.
+     * @param desiredState either true or false
+     * @return the values if there is any combination that gives the desired state
+     */
+    public Optional<Map<Expression, Object>> findFirstValuesForCondition(boolean desiredState) {
+        int row = nextRow(0, desiredState);
+        return row < numRows ? Optional.of(rowValues(row)) : Optional.empty();
+    }
+
+    /**
+     * @param from the row to start looking at
+     * @param desiredState either true or false
+     * @return the first row from the given one with the desired result, numRows if there is none
+     */
+    private int nextRow(int from, boolean desiredState) {
+        int row = desiredState ? results.nextSetBit(from) : results.nextClearBit(from);
+        return row < 0 ? numRows : Math.min(row, numRows);
+    }
+
+    /**
+     * Compiles the given condition so that it can be evaluated for each row.
      *
-     * @param condition   The condition to evaluate.
-     * @param truthValues The truth values for the variables.
-     * @return The result of the evaluation.
+     * Expressions that cannot be handled are compiled into terms that throw an
+     * UnsupportedOperationException when they are evaluated.
+     *
+     * @param condition The condition to evaluate.
+     * @return a term that gives the result of the evaluation for a row.
      */
-    private Object evaluateCondition(Expression condition, Map<Expression, Object> truthValues) {
+    private Term compileCondition(Expression condition) {
         if (condition.isBinaryExpr()) {
             var binaryExpr = condition.asBinaryExpr();
-            var leftExpr = binaryExpr.getLeft();
-            var rightExpr = binaryExpr.getRight();
+            BinaryExpr.Operator operator = binaryExpr.getOperator();
 
             if (isInequality(binaryExpr)) {
-                int left = (int) getValue(leftExpr, truthValues);
-                int right = (int) getValue(rightExpr, truthValues);
-
-                return switch (binaryExpr.getOperator()) {
-                    case LESS -> left < right;
-                    case GREATER -> left > right;
-                    case LESS_EQUALS -> left <= right;
-                    case GREATER_EQUALS -> left >= right;
-                    default -> throw new UnsupportedOperationException("Unsupported operator: " + binaryExpr.getOperator());
+                Term leftTerm = compileValue(binaryExpr.getLeft());
+                Term rightTerm = compileValue(binaryExpr.getRight());
+                return row -> {
+                    int left = (int) leftTerm.evaluate(row);
+                    int right = (int) rightTerm.evaluate(row);
+                    return switch (operator) {
+                        case LESS -> left < right;
+                        case GREATER -> left > right;
+                        case LESS_EQUALS -> left <= right;
+                        default -> left >= right;
+                    };
                 };
             } else {
-                Object left = evaluateCondition(leftExpr, truthValues);
-                Object right = evaluateCondition(rightExpr, truthValues);
-                return switch (binaryExpr.getOperator()) {
-                    case AND -> ((Boolean) left) && (Boolean) right;
-                    case OR -> ((Boolean) left) || (Boolean) right;
-                    case EQUALS -> (left == null || right == null) ? left == right : left.equals(right);
-                    case NOT_EQUALS -> (left == null || right == null) ? left != right : !left.equals(right);
-                    default -> throw new UnsupportedOperationException("Unsupported operator: " + binaryExpr.getOperator());
+                Term leftTerm = compileCondition(binaryExpr.getLeft());
+                Term rightTerm = compileCondition(binaryExpr.getRight());
+                return switch (operator) {
+                    case AND -> row -> {
+                        Object left = leftTerm.evaluate(row);
+                        Object right = rightTerm.evaluate(row);
+                        return ((Boolean) left) && (Boolean) right;
+                    };
+                    case OR -> row -> {
+                        Object left = leftTerm.evaluate(row);
+                        Object right = rightTerm.evaluate(row);
+                        return ((Boolean) left) || (Boolean) right;
+                    };
+                    case EQUALS -> row -> {
+                        Object left = leftTerm.evaluate(row);
+                        Object right = rightTerm.evaluate(row);
+                        return (left == null || right == null) ? left == right : left.equals(right);
+                    };
+                    case NOT_EQUALS -> row -> {
+                        Object left = leftTerm.evaluate(row);
+                        Object right = rightTerm.evaluate(row);
+                        return (left == null || right == null) ? left != right : !left.equals(right);
+                    };
+                    default -> unsupported("Unsupported operator: " + operator);
                 };
             }
         } else if (condition.isUnaryExpr()) {
             var unaryExpr = condition.asUnaryExpr();
-            Object value = evaluateCondition(unaryExpr.getExpression(), truthValues);
-            return switch (unaryExpr.getOperator()) {
-                case LOGICAL_COMPLEMENT -> ! (Boolean)value;
-                default -> throw new UnsupportedOperationException("Unsupported operator: " + unaryExpr.getOperator());
-            };
+            Term term = compileCondition(unaryExpr.getExpression());
+            if (unaryExpr.getOperator() == UnaryExpr.Operator.LOGICAL_COMPLEMENT) {
+                return row -> !(Boolean) term.evaluate(row);
+            }
+            return unsupported("Unsupported operator: " + unaryExpr.getOperator());
         } else if (condition.isNameExpr()) {
-            return truthValues.get(condition);
+            Integer position = positions.get(condition);
+            return row -> valueOf(position, row);
         } else if (condition.isBooleanLiteralExpr()) {
-            return condition.asBooleanLiteralExpr().getValue();
+            boolean value = condition.asBooleanLiteralExpr().getValue();
+            return row -> value;
         } else if (condition.isStringLiteralExpr() || condition.isFieldAccessExpr()) {
-            return getValue(condition, truthValues);
+            return compileValue(condition);
         }
         else if (condition.isMethodCallExpr() ) {
             if (condition.toString().contains("equals")) {
-                MethodCallExpr mce = condition.asMethodCallExpr();
-                Expression scope = mce.getScope().orElse(null);
-                Object scopeValue = truthValues.get(scope);
-                Expression argument = mce.getArgument(0);
-                if (argument.isLiteralExpr()) {
-                    if (scopeValue == null) {
-                        return argument.isNullLiteralExpr();
-                    }
-                    return scopeValue.equals(getValue(argument, truthValues));
-                }
-                else {
-                    Object arg = truthValues.get(argument);
-
-
-                    if (scopeValue == null) {
-                        return arg == null;
-                    }
-                    return scopeValue.equals(arg);
-                }
+                return compileEquals(condition.asMethodCallExpr());
             }
-            return getValue(condition, truthValues);
+            return compileValue(condition);
         } else if (condition.isNullLiteralExpr()) {
-            return null;
+            return row -> null;
         }
-        throw new UnsupportedOperationException("Unsupported expression: " + condition);
+        return unsupported("Unsupported expression: " + condition);
+    }
+
+    private Term compileEquals(MethodCallExpr mce) {
+        Integer scope = mce.getScope().map(positions::get).orElse(null);
+        if (mce.getArguments().isEmpty()) {
+            return unsupported("Unsupported expression: " + mce);
+        }
+        Expression argument = mce.getArgument(0);
+        if (argument.isLiteralExpr()) {
+            boolean isNull = argument.isNullLiteralExpr();
+            Term literal = compileValue(argument);
+            return row -> {
+                Object scopeValue = valueOf(scope, row);
+                if (scopeValue == null) {
+                    return isNull;
+                }
+                return scopeValue.equals(literal.evaluate(row));
+            };
+        }
+        Integer position = positions.get(argument);
+        return row -> {
+            Object scopeValue = valueOf(scope, row);
+            Object arg = valueOf(position, row);
+            if (scopeValue == null) {
+                return arg == null;
+            }
+            return scopeValue.equals(arg);
+        };
     }
 
     /**
-     * FInd the appropriate value for the given expression
+     * Compile an expression that gives the appropriate value for a variable or a literal.
      * @param expr the conditional expression to find the value for
-     * @param truthValues the table containing the values to use
-     * @return the value will typically be true/false in some cases it maybe 0/1 and when the
-     *      condition has a null in it, we may return null
+     * @return a term that gives a value that will typically be true/false, in some cases it maybe
+     *      0/1 and when the condition has a null in it, we may return null
      */
-    private Object getValue(Expression expr, Map<Expression, Object> truthValues) {
+    private Term compileValue(Expression expr) {
         if (expr.isNameExpr()) {
-            Object value = truthValues.get(expr);
-            if (value instanceof Boolean) {
-                return (boolean) value ? 1 : 0;
-            } else if (value instanceof Number n) {
-                return n.intValue();
-            }
+            Integer position = positions.get(expr);
+            return row -> {
+                Object value = valueOf(position, row);
+                if (value instanceof Boolean b) {
+                    return b ? 1 : 0;
+                } else if (value instanceof Number n) {
+                    return n.intValue();
+                }
+                return value;
+            };
         } else if (expr.isLiteralExpr()) {
             return switch (expr) {
-                case IntegerLiteralExpr integerLiteralExpr -> Integer.valueOf(integerLiteralExpr.getValue());
-                case DoubleLiteralExpr doubleLiteralExpr -> Double.valueOf(doubleLiteralExpr.getValue());
-                case StringLiteralExpr stringLiteralExpr -> stringLiteralExpr.getValue();
-                case NullLiteralExpr nullLiteralExpr -> null;
-                default -> throw new UnsupportedOperationException("Unsupported literal expression: " + expr);
+                case IntegerLiteralExpr integerLiteralExpr -> {
+                    Integer value = Integer.valueOf(integerLiteralExpr.getValue());
+                    yield row -> value;
+                }
+                case DoubleLiteralExpr doubleLiteralExpr -> {
+                    Double value = Double.valueOf(doubleLiteralExpr.getValue());
+                    yield row -> value;
+                }
+                case StringLiteralExpr stringLiteralExpr -> {
+                    String value = stringLiteralExpr.getValue();
+                    yield row -> value;
+                }
+                case NullLiteralExpr nullLiteralExpr -> row -> null;
+                default -> unsupported("Unsupported literal expression: " + expr);
             };
         }
 
-        return truthValues.get(expr);
+        Integer position = positions.get(expr);
+        return row -> valueOf(position, row);
+    }
+
+    private static Term unsupported(String message) {
+        return row -> {
+            throw new UnsupportedOperationException(message);
+        };
     }
 
+    /**
+     * @return the table with one map for each row, holding the values of the variables and the
+     *      result under the RESULT key
+     */
     public List<Map<Expression, Object>> getTable() {
+        if (table == null) {
+            List<Map<Expression, Object>> rows = new ArrayList<>(numRows);
+            for (int i = 0; i < numRows; i++) {
+                Map<Expression, Object> row = rowValues(i);
+                row.put(RESULT, results.get(i));
+                rows.add(row);
+            }
+            table = rows;
+        }
         return table;
     }
 
@@ -25,6 +25,7 @@ import com.github.javaparser.resolution.declarations.ResolvedConstructorDeclarat
 import com.github.javaparser.resolution.declarations.ResolvedParameterDeclaration;
 import com.github.javaparser.resolution.types.ResolvedType;
 import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.evaluator.ReflectionCache;
 import com.github.javaparser.JavaParser;
 import com.github.javaparser.ParserConfiguration;
 import com.github.javaparser.ast.CompilationUnit;
@@ -42,6 +43,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.file.Files;
@@ -49,7 +51,13 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 import sa.com.cloudsolutions.antikythera.depsolver.InterfaceSolver;
 import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
@@ -78,11 +86,23 @@ public class AbstractCompiler {
     private static final Logger logger = LoggerFactory.getLogger(AbstractCompiler.class);
     public static final String SUFFIX = ".java";
 
-    private static JavaParser javaParser;
+    /**
+     * JavaParser instances are not thread safe, so each thread gets its own parser. All of them
+     * share the same configuration and symbol resolver.
+     */
+    private static ThreadLocal<JavaParser> javaParser;
     protected static JavaSymbolSolver symbolResolver;
     protected static CombinedTypeSolver combinedTypeSolver;
     protected static ArrayList<JarTypeSolver> jarSolvers;
     protected static ClassLoader loader;
+    /**
+     * Held while symbols are being resolved, see resolveSymbols().
+     */
+    public static final Object RESOLUTION_LOCK = new Object();
+    /**
+     * The number of source files that have been parsed in full.
+     */
+    private static final AtomicLong parsed = new AtomicLong();
     protected CompilationUnit cu;
     protected String className;
 
@@ -93,7 +113,7 @@ public class AbstractCompiler {
     }
 
     protected static void setupParser() throws IOException {
-        combinedTypeSolver = new CombinedTypeSolver();
+        combinedTypeSolver = new SynchronizedTypeSolver();
         combinedTypeSolver.add(new ReflectionTypeSolver());
         combinedTypeSolver.add(new JavaParserTypeSolver(Settings.getBasePath()));
         jarSolvers = new ArrayList<>();
@@ -108,6 +128,8 @@ public class AbstractCompiler {
             urls[i] = Paths.get(jarFile).toUri().toURL();
         }
         loader = new URLClassLoader(urls);
+        ClassCache.reset();
+        ReflectionCache.reset();
 
         Object f = Settings.getProperty("finch");
         if(f != null) {
@@ -118,7 +140,10 @@ public class AbstractCompiler {
         }
         symbolResolver = new JavaSymbolSolver(combinedTypeSolver);
         ParserConfiguration parserConfiguration = new ParserConfiguration().setSymbolResolver(symbolResolver);
-        javaParser = new JavaParser(parserConfiguration);
+        javaParser = ThreadLocal.withInitial(() -> new JavaParser(parserConfiguration));
+        SourceIndex.reset();
+        AntikytheraRunTime.setCompilationUnitLimit(
+                Settings.getProperty("max_compilation_units", Integer.class).orElse(0));
     }
 
     /**
@@ -149,7 +174,11 @@ public class AbstractCompiler {
     }
 
     public static Class<?> loadClass(String resolvedClass) throws ClassNotFoundException {
-        return loader.loadClass(resolvedClass);
+        Optional<Class<?>> c = ClassCache.findInLoader(resolvedClass);
+        if (c.isPresent()) {
+            return c.get();
+        }
+        throw new ClassNotFoundException(resolvedClass);
     }
 
     public static void reset() throws IOException {
@@ -163,8 +192,9 @@ public class AbstractCompiler {
      * fetched from the resolved map.
      * @param relativePath a path name relative to the base path of the application.
      * @throws FileNotFoundException when the source code cannot be found
+     * @throws IOException when the source code cannot be read
      */
-    public boolean compile(String relativePath) throws FileNotFoundException {
+    public boolean compile(String relativePath) throws IOException {
         this.className = pathToClass(relativePath);
 
         cu = AntikytheraRunTime.getCompilationUnit(className);
@@ -173,20 +203,74 @@ public class AbstractCompiler {
             return true;
         }
 
+        cu = parse(relativePath);
+        AntikytheraRunTime.addClass(className, cu, sourceOf(relativePath));
+
+        // fresh meat
+        return false;
+    }
+
+    /**
+     * Creates a supplier that will parse the file again, so that compilation units can be reloaded
+     * after they have been evicted from memory.
+     * @param relativePath a path name relative to the base path of the application.
+     * @return a supplier of compilation units
+     */
+    static Supplier<CompilationUnit> sourceOf(String relativePath) {
+        return () -> {
+            try {
+                return parse(relativePath);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    /**
+     * Parses the source code at the relative path without registering it with the runtime.
+     * @param relativePath a path name relative to the base path of the application.
+     * @return the compilation unit
+     * @throws FileNotFoundException when the source code cannot be found
+     * @throws IOException when the source code cannot be read
+     */
+    static CompilationUnit parse(String relativePath) throws IOException {
         logger.debug("\t{}", relativePath);
         Path sourcePath = Paths.get(Settings.getBasePath(), relativePath);
 
         File file = sourcePath.toFile();
+        parsed.incrementAndGet();
 
         // Proceed with parsing the controller file
-        FileInputStream in = new FileInputStream(file);
-        cu = javaParser.parse(in).getResult().orElseThrow(() -> new IllegalStateException("Parse error"));
-        AntikytheraRunTime.addClass(className, cu);
+        try (FileInputStream in = new FileInputStream(file)) {
+            return javaParser.get().parse(in).getResult().orElseThrow(() -> new IllegalStateException("Parse error"));
+        }
+    }
 
-        // fresh meat
-        return false;
+
+    /**
+     * Resolves symbols while holding a lock shared by all threads.
+     *
+     * The symbol solver keeps what it has worked out in caches that belong to the type solvers
+     * and to JavaParserFacade, none of which are thread safe. Compilation units are shared between
+     * the controllers that are processed concurrently, so calls to resolve() or
+     * calculateResolvedType() on a node are made through here.
+     *
+     * @param resolution the code that resolves the symbols
+     * @return whatever the resolution produced
+     * @param <T> the type of the result
+     */
+    public static <T> T resolveSymbols(Supplier<T> resolution) {
+        synchronized (RESOLUTION_LOCK) {
+            return resolution.get();
+        }
     }
 
+    /**
+     * @return the number of source files that have been parsed in full
+     */
+    public static long getParseCount() {
+        return parsed.get();
+    }
 
     /**
      * Get the name of the parameter for a rest controller
@@ -239,7 +323,7 @@ public class AbstractCompiler {
 
             String packageName = cu.getPackageDeclaration().map(NodeWithName::getNameAsString).orElse("");
             String fileName = packageName + "." + type.getNameAsString() + SUFFIX;
-            if (new File(Settings.getBasePath(), classToPath(fileName)).exists()) {
+            if (SourceIndex.exists(classToPath(fileName))) {
                 CompilationUnit other = AntikytheraRunTime.getCompilationUnit(fileName.replace(".java",""));
                 if (other != null) {
                     return getMatchingType(other, type.getNameAsString());
@@ -276,7 +360,7 @@ public class AbstractCompiler {
     }
 
     protected JavaParser getJavaParser() {
-        return javaParser;
+        return javaParser.get();
     }
 
     /**
@@ -344,6 +428,11 @@ public class AbstractCompiler {
      * @return the fully qualified name of the class.
      */
     public static String findFullyQualifiedName(CompilationUnit cu, String className) {
+        return ResolutionCache.of(cu).findFullyQualifiedName(className,
+                () -> resolveFullyQualifiedName(cu, className));
+    }
+
+    private static String resolveFullyQualifiedName(CompilationUnit cu, String className) {
         /*
          * The strategy is threefold. First check if there exists an import that ends with the
          * short class name as it's last component. Our preprocessing would have already replaced
@@ -361,42 +450,66 @@ public class AbstractCompiler {
             return imp.getNameAsString();
         }
 
+        return findInPackageOrLoader(cu, className);
+    }
+
+    /**
+     * Works out the fully qualified name of a type using only the imports and the package of a
+     * compilation unit.
+     *
+     * findFullyQualifiedName looks at the compilation units of the imported classes, which means
+     * parsing them in full. The header only pass of pre processing needs nothing more than the
+     * names, so here a class of the application is recognized by its presence in the source index
+     * and anything else has to be found by the class loader.
+     *
+     * @param cu a compilation unit, typically one with only the type headers
+     * @param className the simple name of a class
+     * @return the fully qualified name or null if it could not be determined
+     */
+    public static String findHeaderName(CompilationUnit cu, String className) {
+        for (ImportDeclaration imp : cu.getImports()) {
+            if (!imp.isAsterisk() && (imp.getNameAsString().equals(className)
+                    || className.equals(imp.getName().getIdentifier()))) {
+                return imp.getNameAsString();
+            }
+        }
+        for (ImportDeclaration imp : cu.getImports()) {
+            if (imp.isAsterisk() && !imp.isStatic()) {
+                String fullClassName = imp.getNameAsString() + "." + className;
+                if (SourceIndex.exists(classToPath(fullClassName)) || ClassCache.findAnywhere(fullClassName).isPresent()) {
+                    return fullClassName;
+                }
+            }
+        }
+        for (Object e : Settings.getProperty("extra_exports", List.class).orElseGet(List::of)) {
+            if (e.toString().endsWith(className)) {
+                return e.toString();
+            }
+        }
+        return findInPackageOrLoader(cu, className);
+    }
+
+    private static String findInPackageOrLoader(CompilationUnit cu, String className) {
         String packageName = cu.getPackageDeclaration().map(NodeWithName::getNameAsString).orElse("");
         String fileName = packageName + "." + className + SUFFIX;
-        if (new File(Settings.getBasePath(), classToPath(fileName)).exists()) {
+        if (SourceIndex.exists(classToPath(fileName))) {
             return packageName + "." + className;
         }
 
-        try {
-            Class.forName(className);
+        if (ClassCache.find(className).isPresent()) {
             return className;
-        } catch (ClassNotFoundException e) {
-            /*
-             * It's ok to silently ignore this one. It just means that the class cannot be
-             * located in a jar. That maybe because we don't still have a fully qualified name.
-             */
         }
-
-        try {
-            Class.forName("java.lang." + className);
+        /*
+         * We don't have a fully qualified name, it may be in the lang package or in the same
+         * package as the current CU
+         */
+        if (ClassCache.find("java.lang." + className).isPresent()) {
             return "java.lang." + className;
-        } catch (ClassNotFoundException ex) {
-            /*
-             * Once again ignore the exception. We don't have the class in the lang package
-             * but it can probably still be found in the same package as the current CU
-             */
         }
-
-        try {
-            Class.forName(packageName + className);
+        if (ClassCache.find(packageName + className).isPresent()) {
             return packageName + className;
-        } catch (ClassNotFoundException ex) {
-            /*
-             * Once again ignore the exception. We don't have the class in the lang package
-             * but it can probably still be found in the same package as the current CU
-             */
-            return null;
         }
+        return null;
     }
 
     public static List<ImportWrapper> findImport(CompilationUnit cu, Type t) {
@@ -433,6 +546,10 @@ public class AbstractCompiler {
      * @return the import declaration or null if not found
      */
     public static ImportWrapper findImport(CompilationUnit cu, String className) {
+        return ResolutionCache.of(cu).findImport(className, () -> resolveImport(cu, className));
+    }
+
+    private static ImportWrapper resolveImport(CompilationUnit cu, String className) {
         ImportWrapper imp = findNonWildcardImport(cu, className);
         if (imp != null) {
             return imp;
@@ -520,33 +637,22 @@ public class AbstractCompiler {
                 String impName = imp.getNameAsString();
 
                 String fullClassName = impName + "." + className;
-                try {
-                    Class.forName(fullClassName);
+                if (ClassCache.findAnywhere(fullClassName).isPresent()) {
                     /*
                      * Wild card import. Append the class name to the end and load the class,
                      * we are on this line because it has worked so this is the correct import.
+                     * The class may have come from the jar files of the application rather
+                     * than from one that had already been loaded.
                      */
                     return new ImportWrapper(imp, true);
-                } catch (ClassNotFoundException e) {
-                    try {
-                        AbstractCompiler.loadClass(fullClassName);
-                        /*
-                         * We are here because the previous attempt at class forname was
-                         * unsuccessfully simply because the class had not been loaded.
-                         * Here we have loaded it, which obviously means it's there
-                         */
-                        return new ImportWrapper(imp, true);
-                    } catch (ClassNotFoundException ex) {
-                        /*
-                         * There's one more thing that we can try, append the class name to the
-                         * end of the wildcard import and see if the corresponding file can be
-                         * located on the base folder.
-                         */
-                        ImportWrapper wrapper = fakeImport(className, imp, fullClassName, impName);
-                        if (wrapper != null) return wrapper;
-                    }
-
                 }
+                /*
+                 * There's one more thing that we can try, append the class name to the
+                 * end of the wildcard import and see if the corresponding file can be
+                 * located on the base folder.
+                 */
+                ImportWrapper wrapper = fakeImport(className, imp, fullClassName, impName);
+                if (wrapper != null) return wrapper;
             }
         }
         return null;
@@ -582,9 +688,7 @@ public class AbstractCompiler {
             }
         }
         else {
-            String path = AbstractCompiler.classToPath(fullClassName);
-            Path sourcePath = Paths.get(Settings.getBasePath(), path);
-            if (sourcePath.toFile().exists()) {
+            if (SourceIndex.exists(AbstractCompiler.classToPath(fullClassName))) {
                 ImportDeclaration i = new ImportDeclaration(fullClassName, false, false);
                 return new ImportWrapper(i);
             }
@@ -781,21 +885,120 @@ public class AbstractCompiler {
      * Precompile all the java files in the base folder.
      * While doing so we will try to determine what interfaces are implemented by each class.
      *
+     * This is done in two passes. The first pass parses every file and the second works out the
+     * interfaces and parent classes. Since all the compilation units are available by the time the
+     * second pass starts, the result does not depend on the order in which the files were found.
+     * When the parallel_preprocess setting is true both passes are spread across all the cores.
+     *
+     * When the header_index setting is true the first pass only looks at the type declarations
+     * and the complete compilation units are parsed on demand.
+     *
+     * When the cache_path setting is present, files that have not changed since the last run are
+     * restored from the {@link CompilationCache} and will only be parsed if they are needed.
+     *
      * @throws IOException when the files cannot be precompiled.
      */
     public static void preProcess() throws IOException {
-        try (var paths = Files.walk(Paths.get(Settings.getBasePath()))) {
-            List<File> javaFiles = paths
-                    .filter(Files::isRegularFile)
-                    .filter(path -> path.toString().endsWith(SUFFIX))
-                    .map(Path::toFile)
-                    .toList();
+        List<String> javaFiles = SourceIndex.getSources();
+
+        CompilationCache cache = CompilationCache.open();
+        if (cache != null) {
+            javaFiles = cache.restore(javaFiles);
+        }
 
-            for (File javaFile : javaFiles) {
-                InterfaceSolver solver = new InterfaceSolver();
-                solver.compile(Paths.get(Settings.getBasePath()).relativize(javaFile.toPath()).toString());
+        Map<String, CompilationUnit> headers = Settings.getProperty("header_index", Boolean.class).orElse(false)
+                ? new ConcurrentHashMap<>() : null;
+
+        if (Settings.getProperty("parallel_preprocess", Boolean.class).orElse(false)) {
+            preProcessParallel(javaFiles, cache, headers);
+        }
+        else {
+            for (String javaFile : javaFiles) {
+                register(javaFile, headers);
             }
+            for (String javaFile : javaFiles) {
+                solveInterfaces(javaFile, cache, headers);
+            }
+        }
+
+        if (cache != null) {
+            cache.save();
+        }
+    }
+
+    /**
+     * The first pass of pre processing.
+     * When the headers map is available the file is only scanned for the type declarations and
+     * the full compilation unit will be parsed on demand. If the header scan fails the file is
+     * compiled in full.
+     * @param javaFile the path of the file relative to the base path
+     * @param headers collects the header compilation units, may be null.
+     * @throws IOException if the file cannot be read
+     */
+    private static void register(String javaFile, Map<String, CompilationUnit> headers) throws IOException {
+        if (headers != null) {
+            Optional<CompilationUnit> header = HeaderScanner.scan(javaFile);
+            if (header.isPresent()) {
+                String name = pathToClass(javaFile);
+                headers.put(name, header.get());
+                AntikytheraRunTime.addClassHeader(name, header.get(), sourceOf(javaFile));
+                return;
+            }
+        }
+        new AbstractCompiler().compile(javaFile);
+    }
+
+    private static void solveInterfaces(String javaFile, CompilationCache cache,
+                                        Map<String, CompilationUnit> headers) throws IOException {
+        InterfaceSolver solver = new InterfaceSolver();
+        CompilationUnit header = headers == null ? null : headers.get(pathToClass(javaFile));
+        if (header != null) {
+            solver.solve(header, headers);
+        }
+        else {
+            solver.compile(javaFile);
+        }
+        if (cache != null) {
+            cache.record(javaFile, solver);
+        }
+    }
 
+    /**
+     * Parse and solve the interfaces of the given files using a fork join pool.
+     * @param javaFiles the paths of the files relative to the base path
+     * @param cache the compilation cache, may be null
+     * @param headers collects the header compilation units, may be null
+     * @throws IOException if any one of the files cannot be read
+     */
+    private static void preProcessParallel(List<String> javaFiles, CompilationCache cache,
+                                           Map<String, CompilationUnit> headers) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            pool.submit(() -> javaFiles.parallelStream().forEach(javaFile -> {
+                try {
+                    register(javaFile, headers);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            })).get();
+
+            pool.submit(() -> javaFiles.parallelStream().forEach(javaFile -> {
+                try {
+                    solveInterfaces(javaFile, cache, headers);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while pre processing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException uio) {
+                throw uio.getCause();
+            }
+            throw new IOException("Error while pre processing", e.getCause());
+        } finally {
+            pool.shutdown();
         }
     }
 
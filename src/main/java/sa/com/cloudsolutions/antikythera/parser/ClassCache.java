@@ -0,0 +1,133 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads classes by name and remembers the outcome.
+ *
+ * Classes are looked up by name while resolving imports, building the arguments for reflective
+ * calls and creating DTOs, often in loops over the fields of a class or the imports of a
+ * compilation unit. A lot of these lookups fail and each failure costs a ClassNotFoundException,
+ * so both the classes that were found and the names that could not be found are kept.
+ *
+ * There are two separate lookups. find() behaves like Class.forName while findInLoader() only
+ * uses the class loader of the AbstractCompiler, which knows about the jar files of the
+ * application under test. That class loader is replaced when the parser is set up again, so
+ * is the cache.
+ */
+public class ClassCache {
+    private static final Map<String, Optional<Class<?>>> classes = new ConcurrentHashMap<>();
+    private static final Map<String, Optional<Class<?>>> loaded = new ConcurrentHashMap<>();
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong loads = new AtomicLong();
+    private static final AtomicLong failures = new AtomicLong();
+    private static final AtomicLong loadTime = new AtomicLong();
+
+    private ClassCache() {}
+
+    /**
+     * Find a class the way that Class.forName would.
+     * @param name the fully qualified name of the class
+     * @return the class if it could be loaded
+     */
+    public static Optional<Class<?>> find(String name) {
+        return lookup(classes, name, false);
+    }
+
+    /**
+     * Same as find but throws an exception when the class does not exist.
+     * @param name the fully qualified name of the class
+     * @return the class
+     * @throws ClassNotFoundException if the class could not be loaded
+     */
+    public static Class<?> forName(String name) throws ClassNotFoundException {
+        Optional<Class<?>> c = find(name);
+        if (c.isPresent()) {
+            return c.get();
+        }
+        throw new ClassNotFoundException(name);
+    }
+
+    /**
+     * Find a class using the class loader that has the jar files of the application.
+     * @param name the fully qualified name of the class
+     * @return the class if it could be loaded
+     */
+    public static Optional<Class<?>> findInLoader(String name) {
+        return lookup(loaded, name, true);
+    }
+
+    /**
+     * Try Class.forName first and then the class loader with the jar files.
+     * @param name the fully qualified name of the class
+     * @return the class if it could be loaded by either means
+     */
+    public static Optional<Class<?>> findAnywhere(String name) {
+        Optional<Class<?>> c = find(name);
+        return c.isPresent() ? c : findInLoader(name);
+    }
+
+    private static Optional<Class<?>> lookup(Map<String, Optional<Class<?>>> cache, String name, boolean useLoader) {
+        if (name == null) {
+            return Optional.empty();
+        }
+        Optional<Class<?>> c = cache.get(name);
+        if (c != null) {
+            hits.incrementAndGet();
+            return c;
+        }
+
+        loads.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            c = Optional.of(useLoader ? AbstractCompiler.loader.loadClass(name) : Class.forName(name));
+        } catch (ClassNotFoundException | NoClassDefFoundError e) {
+            failures.incrementAndGet();
+            c = Optional.empty();
+        } finally {
+            loadTime.addAndGet(System.nanoTime() - start);
+        }
+        cache.put(name, c);
+        return c;
+    }
+
+    /**
+     * Forget everything, the class loader has changed.
+     */
+    public static void reset() {
+        loaded.clear();
+        classes.clear();
+    }
+
+    /**
+     * @return the number of lookups that were answered from the cache
+     */
+    public static long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of times that a class loader had to be asked for a class
+     */
+    public static long getLoads() {
+        return loads.get();
+    }
+
+    /**
+     * @return the number of loads that did not find the class
+     */
+    public static long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * @return the total time spent on loading classes in milliseconds
+     */
+    public static long getLoadTime() {
+        return loadTime.get() / 1_000_000;
+    }
+}
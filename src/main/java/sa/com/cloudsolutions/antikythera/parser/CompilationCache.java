@@ -0,0 +1,213 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.depsolver.InterfaceSolver;
+import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persists what pre processing learns about each source file so that a warm restart on an
+ * unchanged code base does not need to parse every file again.
+ *
+ * JavaParser's syntax trees are not serializable, so what we keep on disk is the derived data:
+ * the flags held in the runtime's class info together with the interface and parent class edges.
+ * Compilation units for files restored from the cache are parsed on demand, the first time that
+ * something asks for them.
+ *
+ * Entries are keyed by the path relative to the base path and are only trusted when both the size
+ * and the last modified time of the file still match. An entry is also discarded when one of the
+ * interfaces that had to be looked at while solving it has been added, changed or removed.
+ *
+ * The cache is enabled by pointing the cache_path setting at a writable folder.
+ */
+public class CompilationCache {
+    private static final Logger logger = LoggerFactory.getLogger(CompilationCache.class);
+
+    public static final String CACHE_PATH = "cache_path";
+    public static final String FILE_NAME = "antikythera-cache.json";
+    /**
+     * Increment this whenever the layout of the entries changes so that old caches are ignored.
+     */
+    private static final int VERSION = 1;
+
+    private static final ObjectMapper mapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final Path location;
+    /**
+     * The entries that were read from the disk.
+     */
+    private final Map<String, Entry> stored;
+    /**
+     * The entries that will be written back. Files may be solved concurrently.
+     */
+    private final Map<String, Entry> current = new ConcurrentHashMap<>();
+
+    private CompilationCache(Path location, Map<String, Entry> stored) {
+        this.location = location;
+        this.stored = stored;
+    }
+
+    /**
+     * Opens the cache named by the cache_path setting.
+     * @return the cache or null if caching has not been enabled
+     */
+    public static CompilationCache open() {
+        String path = Settings.getProperty(CACHE_PATH, String.class).orElse(null);
+        if (path == null) {
+            return null;
+        }
+        Path location = Paths.get(path, FILE_NAME);
+        Map<String, Entry> stored = new HashMap<>();
+        if (Files.exists(location)) {
+            try {
+                Document doc = mapper.readValue(location.toFile(), Document.class);
+                if (doc.version == VERSION && Settings.getBasePath().equals(doc.basePath) && doc.entries != null) {
+                    stored.putAll(doc.entries);
+                }
+            } catch (IOException e) {
+                logger.warn("Ignoring unreadable cache {}", location);
+            }
+        }
+        return new CompilationCache(location, stored);
+    }
+
+    /**
+     * Registers every file that has an up-to-date entry in the cache with the runtime.
+     *
+     * @param javaFiles all the java files under the base path
+     * @return the files that were not found in the cache, those will need to be compiled
+     * @throws IOException if the file attributes cannot be read
+     */
+    public List<String> restore(List<String> javaFiles) throws IOException {
+        Map<String, Entry> valid = new HashMap<>();
+        List<String> stale = new ArrayList<>();
+        Set<String> changedClasses = new HashSet<>();
+
+        for (String javaFile : javaFiles) {
+            BasicFileAttributes attributes = Files.readAttributes(
+                    Paths.get(Settings.getBasePath(), javaFile), BasicFileAttributes.class);
+            Entry entry = stored.get(javaFile);
+            if (entry != null && entry.size == attributes.size()
+                    && entry.lastModified == attributes.lastModifiedTime().toMillis()) {
+                valid.put(javaFile, entry);
+            }
+            else {
+                stale.add(javaFile);
+                changedClasses.add(AbstractCompiler.pathToClass(javaFile));
+            }
+        }
+
+        Set<String> present = new HashSet<>(javaFiles);
+        for (String javaFile : stored.keySet()) {
+            if (!present.contains(javaFile)) {
+                changedClasses.add(AbstractCompiler.pathToClass(javaFile));
+            }
+        }
+
+        for (Map.Entry<String, Entry> e : valid.entrySet()) {
+            String javaFile = e.getKey();
+            Entry entry = e.getValue();
+            if (entry.consulted.stream().anyMatch(changedClasses::contains)) {
+                stale.add(javaFile);
+                continue;
+            }
+            AntikytheraRunTime.addClass(AntikytheraRunTime.ClassInfo.lazy(AbstractCompiler.pathToClass(javaFile),
+                    AbstractCompiler.sourceOf(javaFile), entry.serviceClass, entry.controllerClass, entry.componentClass,
+                    entry.isInterface, entry.abstractClass));
+            entry.implementations.forEach((iface, impls) ->
+                    impls.forEach(impl -> AntikytheraRunTime.addImplementation(iface, impl)));
+            entry.parents.forEach((parent, children) ->
+                    children.forEach(child -> AntikytheraRunTime.addSubClass(parent, child)));
+            current.put(javaFile, entry);
+        }
+        logger.info("Restored {} of {} files from the cache", current.size(), javaFiles.size());
+        return stale;
+    }
+
+    /**
+     * Creates an entry for a file that was compiled and solved during this run.
+     * @param javaFile the path of the file relative to the base path
+     * @param solver the interface solver that processed the file
+     * @throws IOException if the file attributes cannot be read
+     */
+    public void record(String javaFile, InterfaceSolver solver) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(
+                Paths.get(Settings.getBasePath(), javaFile), BasicFileAttributes.class);
+        AntikytheraRunTime.ClassInfo info = AntikytheraRunTime.getClassInfo(AbstractCompiler.pathToClass(javaFile));
+
+        Entry entry = new Entry();
+        entry.size = attributes.size();
+        entry.lastModified = attributes.lastModifiedTime().toMillis();
+        if (info != null) {
+            entry.serviceClass = info.isServiceClass();
+            entry.controllerClass = info.isControllerClass();
+            entry.componentClass = info.isComponentClass();
+            entry.isInterface = info.isInterface();
+            entry.abstractClass = info.isAbstractClass();
+        }
+        entry.implementations = solver.getImplementations();
+        entry.parents = solver.getParents();
+        entry.consulted = solver.getConsulted();
+        current.put(javaFile, entry);
+    }
+
+    /**
+     * Writes the cache back to the disk.
+     * The file is replaced atomically so that an interrupted run cannot leave a corrupt cache.
+     * @throws IOException if the cache could not be written
+     */
+    public void save() throws IOException {
+        Document doc = new Document();
+        doc.version = VERSION;
+        doc.basePath = Settings.getBasePath();
+        doc.entries = new HashMap<>(current);
+
+        Files.createDirectories(location.getParent());
+        Path temp = Files.createTempFile(location.getParent(), FILE_NAME, ".tmp");
+        mapper.writeValue(temp.toFile(), doc);
+        Files.move(temp, location, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * The top level object in the cache file.
+     */
+    public static class Document {
+        public int version;
+        public String basePath;
+        public Map<String, Entry> entries;
+    }
+
+    /**
+     * What we know about a single source file.
+     */
+    public static class Entry {
+        public long size;
+        public long lastModified;
+        public boolean serviceClass;
+        public boolean controllerClass;
+        public boolean componentClass;
+        public boolean isInterface;
+        public boolean abstractClass;
+        public Map<String, Set<String>> implementations = new HashMap<>();
+        public Map<String, Set<String>> parents = new HashMap<>();
+        public Set<String> consulted = new HashSet<>();
+    }
+}
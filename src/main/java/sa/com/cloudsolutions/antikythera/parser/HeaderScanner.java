@@ -0,0 +1,144 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+/**
+ * Produces compilation units that contain only the declarations of the top level types.
+ *
+ * Finding out which classes implement an interface or extend another class only requires the
+ * package, the imports and the type headers. The bodies of the types make up most of the source
+ * code, so they are removed with a simple scanner before the remainder is handed over to
+ * JavaParser. No symbol resolver is attached to the parser that is used for these skeletons.
+ *
+ * The scanner is aware of comments, string and character literals and text blocks so that braces
+ * that appear in them do not confuse it. Braces inside parentheses, such as those in annotation
+ * arrays, are not mistaken for the start of a type body.
+ */
+public class HeaderScanner {
+    private static final ThreadLocal<JavaParser> parser = ThreadLocal.withInitial(
+            () -> new JavaParser(new ParserConfiguration()));
+
+    private HeaderScanner() {}
+
+    /**
+     * Parse the headers of the source file at the relative path.
+     * @param relativePath a path name relative to the base path of the application.
+     * @return the skeleton compilation unit or empty if the skeleton could not be parsed.
+     * @throws IOException if the file cannot be read
+     */
+    public static Optional<CompilationUnit> scan(String relativePath) throws IOException {
+        String source = Files.readString(Paths.get(Settings.getBasePath(), relativePath));
+        ParseResult<CompilationUnit> result = parser.get().parse(strip(source));
+        if (result.isSuccessful()) {
+            return result.getResult();
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Removes the bodies of all the top level types.
+     * @param source java source code
+     * @return the source code with everything between the outermost braces removed
+     */
+    public static String strip(String source) {
+        StringBuilder sb = new StringBuilder();
+        int n = source.length();
+        int depth = 0;
+        int parens = 0;
+        int i = 0;
+
+        while (i < n) {
+            int end = skipLiteral(source, i);
+            if (end > i) {
+                if (depth == 0) {
+                    sb.append(source, i, end);
+                }
+                i = end;
+                continue;
+            }
+
+            char c = source.charAt(i);
+            if (depth == 0) {
+                if (c == '(') {
+                    parens++;
+                } else if (c == ')') {
+                    parens--;
+                } else if (c == '{' && parens == 0) {
+                    depth = 1;
+                }
+                sb.append(c);
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                depth--;
+                if (depth == 0) {
+                    sb.append(c);
+                }
+            }
+            i++;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * If a comment or a literal starts at the given position, find where it ends.
+     * @param source the source code
+     * @param i the current position
+     * @return the position just after the comment or literal, or i if there isn't one here.
+     */
+    private static int skipLiteral(String source, int i) {
+        int n = source.length();
+        char c = source.charAt(i);
+        if (c == '/' && i + 1 < n) {
+            char next = source.charAt(i + 1);
+            if (next == '/') {
+                int end = source.indexOf('\n', i);
+                return end == -1 ? n : end;
+            }
+            if (next == '*') {
+                int end = source.indexOf("*/", i + 2);
+                return end == -1 ? n : end + 2;
+            }
+            return i;
+        }
+        if (source.startsWith("\"\"\"", i)) {
+            int j = i + 3;
+            while (j < n) {
+                if (source.charAt(j) == '\\') {
+                    j += 2;
+                } else if (source.startsWith("\"\"\"", j)) {
+                    return j + 3;
+                } else {
+                    j++;
+                }
+            }
+            return n;
+        }
+        if (c == '"' || c == '\'') {
+            int j = i + 1;
+            while (j < n) {
+                char d = source.charAt(j);
+                if (d == '\\') {
+                    j += 2;
+                } else if (d == c) {
+                    return j + 1;
+                } else if (d == '\n') {
+                    return j;
+                } else {
+                    j++;
+                }
+            }
+            return n;
+        }
+        return i;
+    }
+}
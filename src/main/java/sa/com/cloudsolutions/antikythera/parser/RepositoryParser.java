@@ -42,8 +42,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetProvider;
 
 /**
  * Parses JPARespository subclasses to indentify the queries that they execute.
@@ -55,6 +58,10 @@ public class RepositoryParser extends ClassProcessor {
     private static final Logger logger = LoggerFactory.getLogger(RepositoryParser.class);
     public static final String JPA_REPOSITORY = "JpaRepository";
     public static final String SELECT_STAR = "SELECT * FROM ";
+    /**
+     * No more than this many rows of a result are ever looked at, so no more are fetched.
+     */
+    private static final int MAX_ROWS = 10;
 
     /**
      * The queries that were identified in this repository
@@ -96,14 +103,18 @@ public class RepositoryParser extends ClassProcessor {
      * A query cache.
      * Since we execute the same lines of code repeatedly in order to generate tests to cover
      * different branches, we will end up executing the same query over and over again. This is
-     * wasteful in terms of both time and money! So we will cache the result sets here.
+     * wasteful in terms of both time and money! So we will cache the rows here.
+     *
+     * The methods of a controller may be evaluated on several threads, all of which share the
+     * repositories. The cached rows are never read directly, each query is given a copy with a
+     * cursor of its own.
      */
-    private final Map<MethodDeclaration, ResultSet> cache = new HashMap<>();
+    private final Map<MethodDeclaration, CachedRowSet> cache = new ConcurrentHashMap<>();
 
     /**
      * A cache for the simplified queries.
      */
-    private final Map<MethodDeclaration, ResultSet> happyCache = new HashMap<>();
+    private final Map<MethodDeclaration, CachedRowSet> happyCache = new ConcurrentHashMap<>();
 
     public RepositoryParser() throws IOException {
         super();
@@ -208,7 +219,7 @@ public class RepositoryParser extends ClassProcessor {
                 CompilationUnit p = AntikytheraRunTime.getCompilationUnit(fullName);
                 if(p == null) {
                     try {
-                        Class<?> interfaceClass = Class.forName(fullName);
+                        Class<?> interfaceClass = ClassCache.forName(fullName);
                         Method[] methods = interfaceClass.getMethods();
 
                         for (Method method : methods) {
@@ -277,18 +288,50 @@ public class RepositoryParser extends ClassProcessor {
      * @return the result set if the query was executed successfully
      */
     public ResultSet executeQuery(MethodDeclaration method) throws IOException {
-        ResultSet cached = cache.get(method);
-        if (cached != null) {
-            return cached;
+        return executeQuery(queries.get(method));
+    }
+
+    /**
+     * Execute a query, usually a copy of one of the queries of this repository.
+     *
+     * The rows are cached by the method that the query belongs to. Queries are executed one at a
+     * time since they share the connection. The query is given its own copy of the rows, so that
+     * moving through them does not affect any other query.
+     * @param rql the query with its arguments
+     * @return the result set if the query was executed successfully
+     */
+    public ResultSet executeQuery(RepositoryQuery rql) {
+        MethodDeclaration method = rql.getMethodDeclaration();
+        try {
+            CachedRowSet rows = cache.get(method);
+            if (rows == null) {
+                synchronized (RepositoryParser.class) {
+                    rows = cache.get(method);
+                    if (rows == null) {
+                        rows = executeQuery(rql, method);
+                        if (rows != null) {
+                            cache.put(method, rows);
+                        }
+                    }
+                }
+            }
+            CachedRowSet simplified = happyCache.get(method);
+            rql.setSimplifedResultSet(simplified == null ? null : simplified.createCopy());
+            rql.setResultSet(rows == null ? null : rows.createCopy());
+        } catch (SQLException e) {
+            logger.error(rql.getQuery());
         }
-        RepositoryQuery rql = queries.get(method);
-        ResultSet rs = executeQuery(rql, method);
-        rql.setResultSet(rs);
-        cache.put(method, rs);
-        return rs;
+        return rql.getResultSet();
     }
 
-    public ResultSet executeQuery(RepositoryQuery rql, MethodDeclaration method)  {
+    /**
+     * Execute the query and its simplified form against the database.
+     * The rows of the simplified query are put in the happyCache.
+     * @param rql the query with its arguments
+     * @param method the method that the query belongs to
+     * @return the rows of the query if it was executed successfully
+     */
+    private CachedRowSet executeQuery(RepositoryQuery rql, MethodDeclaration method)  {
         try {
             if(runQueries) {
                 RepositoryParser.createConnection();
@@ -304,6 +347,7 @@ public class RepositoryParser extends ClassProcessor {
                     Select simplified = (Select) rql.getSimplifiedStatement();
                     String simplifiedSql = trueFalseCheck(beautify(simplified.toString()));
                     PreparedStatement prep = conn.prepareStatement(simplifiedSql);
+                    prep.setMaxRows(MAX_ROWS);
                     for (int i = 0; i < argumentCount ; i++) {
                         QueryMethodArgument arg = rql.getMethodArguments().get(i);
                         QueryMethodParameter p = rql.getMethodParameters().get(i);
@@ -312,22 +356,23 @@ public class RepositoryParser extends ClassProcessor {
                         }
                     }
 
-                    if (prep.execute()) {
-                        happyCache.put(method, prep.getResultSet());
-                        rql.setSimplifedResultSet(prep.getResultSet());
+                    if (prep.execute() && prep.getResultSet() != null) {
+                        happyCache.put(method, readRows(prep.getResultSet()));
                     }
+                    prep.close();
                 }
 
                 PreparedStatement prep = conn.prepareStatement(sql);
+                prep.setMaxRows(MAX_ROWS);
 
                 for (int i = 0; i < argumentCount ; i++) {
                     QueryMethodArgument arg = rql.getMethodArguments().get(i);
                     bindParameters(arg, prep, i);
                 }
 
-                if (prep.execute()) {
-                    return prep.getResultSet();
-                }
+                CachedRowSet rows = prep.execute() ? readRows(prep.getResultSet()) : null;
+                prep.close();
+                return rows;
             }
 
         } catch (SQLException e) {
@@ -336,6 +381,15 @@ public class RepositoryParser extends ClassProcessor {
         return null;
     }
 
+    /**
+     * Read the rows of a result set into memory so that the cursor can be closed.
+     */
+    private static CachedRowSet readRows(ResultSet rs) throws SQLException {
+        CachedRowSet rows = RowSetProvider.newFactory().createCachedRowSet();
+        rows.populate(rs);
+        return rows;
+    }
+
     private static void bindParameters(QueryMethodArgument arg, PreparedStatement prep, int i) throws SQLException {
         Class<?> clazz = arg.getVariable().getClazz();
         if (clazz == null) {
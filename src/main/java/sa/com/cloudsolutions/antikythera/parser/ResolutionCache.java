@@ -0,0 +1,101 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.DataKey;
+import com.github.javaparser.ast.ImportDeclaration;
+import com.github.javaparser.ast.NodeList;
+import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Remembers how simple class names were resolved within a compilation unit.
+ *
+ * Resolving a name involves going through the imports, looking for files in the base path and
+ * attempting to load classes, all of which are repeated for every reference to a type. The
+ * results, including names that could not be resolved, are kept in the data of the compilation
+ * unit that they belong to.
+ *
+ * The answers depend on the imports of the compilation unit and on which classes have been
+ * compiled. So the cache is discarded when the list of imports has been replaced or its size
+ * has changed, and whenever the runtime registers a class. Cloning a node copies its data, so the
+ * cache also keeps a reference to the compilation unit that it was created for.
+ */
+public class ResolutionCache {
+    private static final DataKey<ResolutionCache> KEY = new DataKey<>() {};
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    private final CompilationUnit owner;
+    private final NodeList<ImportDeclaration> imports;
+    private final int importCount;
+    private final long generation;
+
+    private final Map<String, Optional<ImportWrapper>> importWrappers = new ConcurrentHashMap<>();
+    private final Map<String, Optional<String>> names = new ConcurrentHashMap<>();
+
+    private ResolutionCache(CompilationUnit cu) {
+        this.owner = cu;
+        this.imports = cu.getImports();
+        this.importCount = imports.size();
+        this.generation = AntikytheraRunTime.getGeneration();
+    }
+
+    /**
+     * Find the resolution cache for the compilation unit, creating a new one if needed.
+     * @param cu the compilation unit
+     * @return a cache that is valid for the current state of the compilation unit
+     */
+    static ResolutionCache of(CompilationUnit cu) {
+        synchronized (cu) {
+            if (cu.containsData(KEY)) {
+                ResolutionCache cache = cu.getData(KEY);
+                if (cache.owner == cu && cache.imports == cu.getImports()
+                        && cache.importCount == cu.getImports().size()
+                        && cache.generation == AntikytheraRunTime.getGeneration()) {
+                    return cache;
+                }
+            }
+            ResolutionCache cache = new ResolutionCache(cu);
+            cu.setData(KEY, cache);
+            return cache;
+        }
+    }
+
+    ImportWrapper findImport(String className, Supplier<ImportWrapper> resolver) {
+        return lookup(importWrappers, className, resolver);
+    }
+
+    String findFullyQualifiedName(String className, Supplier<String> resolver) {
+        return lookup(names, className, resolver);
+    }
+
+    /*
+     * computeIfAbsent is not used because resolving a name may end up resolving other names in the
+     * same compilation unit.
+     */
+    private static <T> T lookup(Map<String, Optional<T>> map, String key, Supplier<T> resolver) {
+        Optional<T> value = map.get(key);
+        if (value != null) {
+            hits.incrementAndGet();
+            return value.orElse(null);
+        }
+        misses.incrementAndGet();
+        T result = resolver.get();
+        map.put(key, Optional.ofNullable(result));
+        return result;
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+}
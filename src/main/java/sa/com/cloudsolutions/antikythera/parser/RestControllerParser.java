@@ -22,24 +22,41 @@ import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sa.com.cloudsolutions.antikythera.depsolver.ClassDependency;
 import sa.com.cloudsolutions.antikythera.depsolver.ClassProcessor;
 import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
+import sa.com.cloudsolutions.antikythera.evaluator.ExecutionContext;
 import sa.com.cloudsolutions.antikythera.evaluator.NullArgumentGenerator;
 import sa.com.cloudsolutions.antikythera.evaluator.SpringEvaluator;
 import sa.com.cloudsolutions.antikythera.exception.AntikytheraException;
 import sa.com.cloudsolutions.antikythera.exception.EvaluatorException;
 import sa.com.cloudsolutions.antikythera.exception.GeneratorException;
 import sa.com.cloudsolutions.antikythera.generator.Antikythera;
+import sa.com.cloudsolutions.antikythera.generator.GenerationManifest;
 import sa.com.cloudsolutions.antikythera.generator.SpringTestGenerator;
 
 public class RestControllerParser extends ClassProcessor {
     private static final Logger logger = LoggerFactory.getLogger(RestControllerParser.class);
+
+    /**
+     * The number of controllers that may be processed at the same time.
+     */
+    public static final String PARALLEL_CONTROLLERS = "parallel_controllers";
+    /**
+     * The number of methods of a controller that may be evaluated at the same time.
+     */
+    public static final String PARALLEL_METHODS = "parallel_methods";
     private final File controllers;
 
     /**
@@ -47,6 +64,11 @@ public class RestControllerParser extends ClassProcessor {
      */
     private static Stats stats = new Stats();
 
+    /**
+     * Keeps track of what was generated in the previous run. Null unless incremental generation is enabled.
+     */
+    private static GenerationManifest manifest;
+
     private boolean evaluatorUnsupported = false;
     File current;
     private SpringEvaluator evaluator;
@@ -84,10 +106,15 @@ public class RestControllerParser extends ClassProcessor {
     private void processControllers(File path) throws IOException, EvaluatorException {
         current = path;
         if (path.isDirectory()) {
+            int threads = Settings.getProperty(PARALLEL_CONTROLLERS, Integer.class).orElse(1);
+            if (threads > 1) {
+                processConcurrently(path, threads);
+                return;
+            }
             for (File f : path.listFiles()) {
                 if(f.toString().contains(controllers.toString())) {
                     new RestControllerParser(f).start();
-                    stats.controllers++;
+                    stats.controllers.incrementAndGet();
                 }
             }
 
@@ -96,6 +123,65 @@ public class RestControllerParser extends ClassProcessor {
         }
     }
 
+    /**
+     * Process all the controllers found in the folder and its sub folders on a pool of threads.
+     *
+     * Each controller gets a parser, an evaluator and an execution context of its own.
+     * The dependency graph and the set of classes that have already been copied are shared.
+     *
+     * @param path the folder in which to look for controllers
+     * @param threads the number of controllers to process at the same time
+     * @throws IOException if one of the controllers could not be read
+     * @throws EvaluatorException if one of the controllers could not be processed
+     */
+    private void processConcurrently(File path, int threads) throws IOException, EvaluatorException {
+        List<File> files;
+        try (var paths = Files.walk(path.toPath())) {
+            files = paths.filter(Files::isRegularFile)
+                    .filter(p -> p.toString().endsWith(AbstractCompiler.SUFFIX))
+                    .map(Path::toFile)
+                    .toList();
+        }
+
+        /*
+         * The generator loads the settings again when it is first used. That must not happen
+         * while the workers are reading them.
+         */
+        Antikythera.getInstance();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (File f : files) {
+                futures.add(executor.submit(() -> {
+                    new RestControllerParser(f).start();
+                    stats.controllers.incrementAndGet();
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GeneratorException("Interrupted while processing controllers", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioe) {
+                throw ioe;
+            }
+            if (cause instanceof EvaluatorException ee) {
+                throw ee;
+            }
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new GeneratorException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     private void parseController(File path) throws IOException {
         String absolutePath = path.getAbsolutePath();
         logger.info(absolutePath);
@@ -107,9 +193,29 @@ public class RestControllerParser extends ClassProcessor {
         compile(AbstractCompiler.classToPath(
                 AbstractCompiler.absolutePathToClassName(absolutePath)
         ));
-
-        if (cu.getPackageDeclaration().isPresent()) {
-            processRestController(cu.getPackageDeclaration().get());
+        /*
+         * The imports are expanded in place and the evaluator must see the same tree. The
+         * evaluators pin the classes they work on as well, all of which are released once the
+         * controller is done.
+         */
+        ExecutionContext context = ExecutionContext.current();
+        cu = context.pin(className);
+        try {
+            if (cu.getPackageDeclaration().isPresent()) {
+                PackageDeclaration pd = cu.getPackageDeclaration().get();
+                if (manifest != null) {
+                    TypeDeclaration<?> type = getPublicType(cu);
+                    if (type != null && type.getFullyQualifiedName().isPresent() && manifest.isUpToDate(
+                            type.getFullyQualifiedName().get(),
+                            Antikythera.getInstance().getTestFile(pd.getNameAsString(), type.getNameAsString() + "Test.java").toPath())) {
+                        logger.info("No changes affect {}, keeping the existing tests", type.getNameAsString());
+                        return;
+                    }
+                }
+                processRestController(pd);
+            }
+        } finally {
+            context.unpinAll();
         }
     }
 
@@ -118,6 +224,11 @@ public class RestControllerParser extends ClassProcessor {
 
         TypeDeclaration<?> type = getPublicType(cu);
 
+        /*
+         * Each controller is evaluated in a context of its own. Nothing that was autowired or
+         * left on the stack while evaluating some other controller will be visible to it.
+         */
+        ExecutionContext.setCurrent(new ExecutionContext());
         evaluator = new SpringEvaluator(type.getFullyQualifiedName().get());
         evaluator.setOnTest(true);
 
@@ -156,9 +267,14 @@ public class RestControllerParser extends ClassProcessor {
         /*
          * Pass 2 : Generate the tests
          */
-        AntikytheraRunTime.reset();
-        evaluator.setupFields(cu);
-        cu.accept(new ControllerMethodVisitor(), null);
+        int threads = Settings.getProperty(PARALLEL_METHODS, Integer.class).orElse(1);
+        if (threads > 1) {
+            evaluateConcurrently(type, generator, threads);
+        } else {
+            evaluator.getContext().reset();
+            evaluator.setupFields(cu);
+            cu.accept(new ControllerMethodVisitor(), null);
+        }
 
         for(ImportDeclaration imp : keepImports) {
             String name = imp.getNameAsString();
@@ -187,6 +303,119 @@ public class RestControllerParser extends ClassProcessor {
                 pd.getName().asString(), type.getNameAsString() + "Test.java",
                 gen.toString());
 
+        if (manifest != null) {
+            manifest.record(type.getFullyQualifiedName().get(), dependencies);
+        }
+
+    }
+
+    /**
+     * Evaluate the methods of the controller on a pool of threads.
+     *
+     * Each method gets an evaluator, an execution context and a test generator of its own, so
+     * nothing that happens while evaluating one end point is seen by the others. When they are
+     * all done the tests are merged into the main generator in the order in which the methods
+     * are declared, which makes the output the same no matter which method finished first.
+     *
+     * @param type the controller
+     * @param generator the generator that writes the test class for the controller
+     * @param threads the number of methods to evaluate at the same time
+     */
+    private void evaluateConcurrently(TypeDeclaration<?> type, SpringTestGenerator generator, int threads) {
+        List<MethodDeclaration> methods = new ArrayList<>();
+        cu.accept(new VoidVisitorAdapter<Void>() {
+            @Override
+            public void visit(MethodDeclaration md, Void arg) {
+                super.visit(md, arg);
+                if (checkEligible(md)) {
+                    methods.add(md);
+                }
+            }
+        }, null);
+
+        String className = type.getFullyQualifiedName().orElseThrow();
+        String commonPath = getCommonPath();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<SpringTestGenerator>> futures = new ArrayList<>();
+            for (MethodDeclaration md : methods) {
+                futures.add(executor.submit(() -> {
+                    ExecutionContext context = new ExecutionContext();
+                    ExecutionContext.setCurrent(context);
+                    try {
+                        SpringEvaluator eval = new SpringEvaluator(className);
+                        eval.setOnTest(true);
+
+                        SpringTestGenerator gen = new SpringTestGenerator();
+                        gen.setCommonPath(commonPath);
+                        gen.getCompilationUnit().addClass(type.getNameAsString() + "Test");
+                        eval.addGenerator(gen);
+                        eval.setupFields(cu);
+
+                        evaluate(eval, md);
+                        return gen;
+                    } finally {
+                        context.unpinAll();
+                    }
+                }));
+            }
+            for (Future<SpringTestGenerator> future : futures) {
+                generator.merge(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GeneratorException("Interrupted while evaluating " + className, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new GeneratorException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Evaluate a method of the controller, which generates the tests for it.
+     * @param eval the evaluator for the controller
+     * @param md the method to evaluate
+     */
+    private static void evaluate(SpringEvaluator eval, MethodDeclaration md) {
+        eval.setArgumentGenerator(new NullArgumentGenerator());
+        eval.reset();
+        eval.resetColors();
+        eval.getContext().reset();
+        try {
+            eval.visit(md);
+        } catch (AntikytheraException | ReflectiveOperationException e) {
+            if (Settings.getProperty("dependencies.on_error").equals("log")) {
+                logger.warn("Could not complete processing {} due to {}", md.getName(), e.getMessage());
+            } else {
+                throw new GeneratorException(e);
+            }
+        } finally {
+            logger.info(md.getNameAsString());
+        }
+    }
+
+    private static boolean checkEligible(MethodDeclaration md) {
+        if (md.getAnnotationByName("ExceptionHandler").isPresent()) {
+            return false;
+        }
+        if (md.isPublic()) {
+            Optional<String> ctrl  = Settings.getProperty("controllers", String.class);
+            if(ctrl.isPresent()) {
+                String[] controllers = ctrl.get().split("#");
+                if (controllers.length > 1) {
+                    if (md.getNameAsString().equals(controllers[controllers.length - 1])) {
+                        return true;
+                    }
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
     }
 
     /**
@@ -206,43 +435,9 @@ public class RestControllerParser extends ClassProcessor {
             evaluatorUnsupported = false;
 
             if (checkEligible(md)) {
-                evaluator.setArgumentGenerator(new NullArgumentGenerator());
-                evaluator.reset();
-                evaluator.resetColors();
-                AntikytheraRunTime.reset();
-                try {
-                    evaluator.visit(md);
-                } catch (AntikytheraException | ReflectiveOperationException e) {
-                    if (Settings.getProperty("dependencies.on_error").equals("log")) {
-                        logger.warn("Could not complete processing {} due to {}", md.getName(), e.getMessage());
-                    } else {
-                        throw new GeneratorException(e);
-                    }
-                } finally {
-                    logger.info(md.getNameAsString());
-                }
+                evaluate(evaluator, md);
             }
         }
-
-        private boolean checkEligible(MethodDeclaration md) {
-            if (md.getAnnotationByName("ExceptionHandler").isPresent()) {
-                return false;
-            }
-            if (md.isPublic()) {
-                Optional<String> ctrl  = Settings.getProperty("controllers", String.class);
-                if(ctrl.isPresent()) {
-                    String[] controllers = ctrl.get().split("#");
-                    if (controllers.length > 1) {
-                        if (md.getNameAsString().equals(controllers[controllers.length - 1])) {
-                            return true;
-                        }
-                        return false;
-                    }
-                }
-                return true;
-            }
-            return false;
-        }
     }
 
 
@@ -267,7 +462,7 @@ public class RestControllerParser extends ClassProcessor {
                 return;
             }
             if (md.isPublic()) {
-                stats.methods++;
+                stats.methods.incrementAndGet();
                 resolveMethodParameterTypes(md);
                 md.accept(new ReturnStatmentVisitor(), md);
                 md.accept(new StatementVisitor(), md);
@@ -390,29 +585,37 @@ public class RestControllerParser extends ClassProcessor {
         return "";
     }
 
+    public static void setManifest(GenerationManifest manifest) {
+        RestControllerParser.manifest = manifest;
+    }
+
     public static Stats getStats() {
         return stats;
     }
 
     public static class Stats {
-        int controllers;
-        int methods;
-        int tests = 0;
+        final AtomicInteger controllers = new AtomicInteger();
+        final AtomicInteger methods = new AtomicInteger();
+        final AtomicInteger tests = new AtomicInteger();
 
         public int getControllers() {
-            return controllers;
+            return controllers.get();
         }
 
         public int getMethods() {
-            return methods;
+            return methods.get();
         }
 
         public void setTests(int tests) {
-            this.tests = tests;
+            this.tests.set(tests);
+        }
+
+        public void incrementTests() {
+            tests.incrementAndGet();
         }
 
         public int getTests() {
-            return tests;
+            return tests.get();
         }
     }
 }
@@ -0,0 +1,216 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An in memory index of the java source files under the base path.
+ *
+ * Checking whether a class belongs to the application under test used to mean probing the file
+ * system each time. On network mounted workspaces every one of those probes is expensive, so the
+ * base path is walked once and the relative paths of all the java files are kept in memory.
+ *
+ * The finch folders are not indexed, their classes are compiled and loaded by Finch and are never
+ * looked up as source files. When the watch_sources setting is true, a file watcher keeps the
+ * index up to date with files created or deleted while we are running.
+ */
+public class SourceIndex {
+    private static final Logger logger = LoggerFactory.getLogger(SourceIndex.class);
+
+    /**
+     * The folder that has been indexed.
+     */
+    private static volatile Path root;
+    /**
+     * The paths of the java files relative to the root.
+     */
+    private static volatile Set<String> sources = Set.of();
+    private static volatile String indexedBasePath;
+    private static WatchService watcher;
+
+    private SourceIndex() {}
+
+    /**
+     * Walks the base path to build the index.
+     * @throws IOException if the folders cannot be read
+     */
+    public static synchronized void build() throws IOException {
+        close();
+        Path folder = Paths.get(Settings.getBasePath());
+        Set<String> files = ConcurrentHashMap.newKeySet();
+        if (Files.isDirectory(folder)) {
+            try (var paths = Files.walk(folder)) {
+                paths.filter(Files::isRegularFile)
+                        .filter(path -> path.toString().endsWith(AbstractCompiler.SUFFIX))
+                        .forEach(path -> files.add(relative(folder, path)));
+            }
+        }
+        root = folder;
+        sources = files;
+        indexedBasePath = Settings.getBasePath();
+
+        if (Settings.getProperty("watch_sources", Boolean.class).orElse(false)) {
+            watch();
+        }
+    }
+
+    /**
+     * Discards the index, it will be built again when it is next used.
+     */
+    public static synchronized void reset() {
+        close();
+        indexedBasePath = null;
+    }
+
+    private static void ensureBuilt() {
+        if (indexedBasePath == null || !indexedBasePath.equals(Settings.getBasePath())) {
+            synchronized (SourceIndex.class) {
+                if (indexedBasePath == null || !indexedBasePath.equals(Settings.getBasePath())) {
+                    try {
+                        build();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }
+        }
+    }
+
+    private static String relative(Path folder, Path path) {
+        return folder.relativize(path).toString().replace('\\', '/');
+    }
+
+    /**
+     * Does the base path contain the given file?
+     * @param relativePath a path name relative to the base path of the application.
+     * @return true if the file exists
+     */
+    public static boolean exists(String relativePath) {
+        ensureBuilt();
+        return sources.contains(relativePath);
+    }
+
+    /**
+     * All the java files in the base path.
+     * @return paths relative to the base path
+     */
+    public static List<String> getSources() {
+        ensureBuilt();
+        return sources.stream().sorted().toList();
+    }
+
+    /**
+     * Finds the names of all the classes that belong to a package in the base path.
+     * @param packageName the name of the package
+     * @return fully qualified class names
+     */
+    public static List<String> findClassesInPackage(String packageName) {
+        ensureBuilt();
+        String folder = packageName.replace(".", "/") + "/";
+        List<String> classes = new ArrayList<>();
+        for (String path : sources) {
+            if (path.startsWith(folder) && path.indexOf('/', folder.length()) == -1) {
+                classes.add(AbstractCompiler.pathToClass(path));
+            }
+        }
+        return classes;
+    }
+
+    private static void watch() throws IOException {
+        watcher = FileSystems.getDefault().newWatchService();
+        Map<WatchKey, Path> keys = new ConcurrentHashMap<>();
+        register(root, keys);
+
+        WatchService service = watcher;
+        Thread thread = new Thread(() -> processEvents(service, keys), "source-index-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void register(Path folder, Map<WatchKey, Path> keys) throws IOException {
+        if (!Files.isDirectory(folder)) {
+            return;
+        }
+        try (var dirs = Files.walk(folder)) {
+            for (Path dir : dirs.filter(Files::isDirectory).toList()) {
+                keys.put(dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE), dir);
+            }
+        }
+    }
+
+    private static void processEvents(WatchService service, Map<WatchKey, Path> keys) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                Path dir = keys.get(key);
+                if (dir != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.context() instanceof Path name) {
+                            update(dir.resolve(name), event.kind(), keys);
+                        }
+                    }
+                }
+                if (!key.reset()) {
+                    keys.remove(key);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            /*
+             * The index has been rebuilt or reset, this watcher is no longer needed.
+             */
+        }
+    }
+
+    private static void update(Path path, WatchEvent.Kind<?> kind, Map<WatchKey, Path> keys) {
+        Path folder = root;
+        if (kind == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+            try {
+                register(path, keys);
+                try (var paths = Files.walk(path)) {
+                    paths.filter(p -> p.toString().endsWith(AbstractCompiler.SUFFIX))
+                            .forEach(p -> sources.add(relative(folder, p)));
+                }
+            } catch (IOException e) {
+                logger.warn("Could not watch {}", path);
+            }
+        } else if (path.toString().endsWith(AbstractCompiler.SUFFIX)) {
+            if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
+                sources.add(relative(folder, path));
+            } else {
+                sources.remove(relative(folder, path));
+            }
+        }
+    }
+
+    private static void close() {
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                logger.debug("Could not close the file watcher");
+            }
+            watcher = null;
+        }
+    }
+}
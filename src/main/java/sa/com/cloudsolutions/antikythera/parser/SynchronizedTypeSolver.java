@@ -0,0 +1,23 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.resolution.model.SymbolReference;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
+
+/**
+ * A combined type solver that only lets one thread look up a type at a time.
+ *
+ * The type solvers that parse source files keep their parsed files and the types that they have
+ * found in caches that are not thread safe, and the jar type solvers share a class pool. When
+ * controllers are processed concurrently all the type lookups go through here. The lock is the
+ * one used by AbstractCompiler.resolveSymbols() so that a lookup made by the symbol solver on
+ * behalf of one thread cannot overlap with a resolution made by another.
+ */
+class SynchronizedTypeSolver extends CombinedTypeSolver {
+    @Override
+    public SymbolReference<ResolvedReferenceTypeDeclaration> tryToSolveType(String name) {
+        synchronized (AbstractCompiler.RESOLUTION_LOCK) {
+            return super.tryToSolveType(name);
+        }
+    }
+}
@@ -10,6 +10,7 @@ import java.io.File;
 import java.io.IOException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class InterfaceSolverTest {
     @BeforeAll
@@ -22,6 +23,7 @@ public class InterfaceSolverTest {
         InterfaceSolver solver = new InterfaceSolver();
         solver.compile(AbstractCompiler.classToPath("sa.com.cloudsolutions.antikythera.evaluator.Employee.java"));
         assertEquals(2, AntikytheraRunTime.findImplementations("java.io.Serializable").size());
+        assertTrue(solver.getConsulted().contains("java.io.Serializable"));
 
     }
 
@@ -52,6 +52,14 @@ public class Loops {
         }
     }
 
+    private void infiniteLoop() {
+        int i = 0;
+        while (true) {
+            System.out.println(i);
+            i++;
+        }
+    }
+
     private void doWhileLoop() {
         int i = 0;
         do {
@@ -5,6 +5,7 @@ import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
 
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.expr.BinaryExpr;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
@@ -17,6 +18,8 @@ import java.io.IOException;
 import java.io.PrintStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -106,4 +109,17 @@ class TestArithmetic extends  TestHelper {
         String output = outContent.toString();
         assertTrue(output.contains("30"));
     }
+
+    @Test
+    void testNumericTypes() {
+        assertEquals(3, Evaluator.arithmeticOperation(new Variable(7), new Variable(2), BinaryExpr.Operator.DIVIDE).getValue());
+        assertEquals(-3, Evaluator.arithmeticOperation(new Variable(-7), new Variable(2), BinaryExpr.Operator.DIVIDE).getValue());
+        assertEquals(Long.MAX_VALUE, Evaluator.arithmeticOperation(new Variable(Long.MAX_VALUE - 1), new Variable(1), BinaryExpr.Operator.PLUS).getValue());
+        assertEquals(3.5, Evaluator.arithmeticOperation(new Variable(7), new Variable(2.0), BinaryExpr.Operator.DIVIDE).getValue());
+        assertEquals(6.0f, Evaluator.arithmeticOperation(new Variable(2.0f), new Variable(3), BinaryExpr.Operator.MULTIPLY).getValue());
+        assertEquals("a1", Evaluator.arithmeticOperation(new Variable("a"), new Variable(1), BinaryExpr.Operator.PLUS).getValue());
+        assertSame(Variable.of(10), Evaluator.arithmeticOperation(new Variable(4), new Variable(6), BinaryExpr.Operator.PLUS));
+        assertThrows(ArithmeticException.class,
+                () -> Evaluator.arithmeticOperation(new Variable(1), new Variable(0), BinaryExpr.Operator.DIVIDE));
+    }
 }
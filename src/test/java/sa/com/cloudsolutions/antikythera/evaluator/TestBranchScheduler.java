@@ -0,0 +1,87 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.stmt.IfStmt;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestBranchScheduler {
+    private final MethodDeclaration md = StaticJavaParser.parseMethodDeclaration("""
+            String m(int a) {
+                if (a > 0) {
+                    if (a > 10) {
+                        return "big";
+                    }
+                }
+                if (a < 0) {
+                    return "negative";
+                }
+                return "small";
+            }""");
+    private final List<IfStmt> ifs = md.findAll(IfStmt.class);
+
+    @Test
+    void outerBranchesComeFirst() {
+        BranchScheduler scheduler = new BranchScheduler(md, 100, 0, 0);
+        scheduler.taken(ifs.get(0), true);
+        scheduler.taken(ifs.get(1), false);
+        scheduler.taken(ifs.get(2), false);
+        assertEquals(50.0, scheduler.getCoverage());
+
+        BranchScheduler.Branch next = scheduler.next();
+        assertSame(ifs.get(0), next.statement());
+        assertFalse(next.state());
+
+        scheduler.taken(ifs.get(0), false);
+        next = scheduler.next();
+        assertSame(ifs.get(2), next.statement());
+        assertTrue(next.state());
+        assertTrue(scheduler.isTaken(ifs.get(2), false));
+        assertFalse(scheduler.isTaken(ifs.get(2), true));
+    }
+
+    @Test
+    void unreachableBranchesAreGivenUp() {
+        BranchScheduler scheduler = new BranchScheduler(md, 100, 0, 0);
+        for (IfStmt ifst : ifs) {
+            scheduler.taken(ifst, false);
+        }
+        scheduler.taken(ifs.get(0), true);
+        scheduler.taken(ifs.get(2), true);
+
+        BranchScheduler.Branch next = scheduler.next();
+        assertSame(ifs.get(1), next.statement());
+        scheduler.finished(next);
+        assertSame(next, scheduler.next());
+        scheduler.finished(next);
+        assertNull(scheduler.next());
+
+        assertEquals(List.of(next), scheduler.getMissed());
+        assertEquals(2, scheduler.getRuns());
+    }
+
+    @Test
+    void stopsAtTheTargetOrTheBudget() {
+        BranchScheduler scheduler = new BranchScheduler(md, 50, 0, 0);
+        assertSame(ifs.get(0), scheduler.next().statement());
+        scheduler.taken(ifs.get(0), true);
+        scheduler.taken(ifs.get(0), false);
+        scheduler.taken(ifs.get(2), false);
+        assertEquals(50.0, scheduler.getCoverage());
+        assertNull(scheduler.next());
+
+        BranchScheduler limited = new BranchScheduler(md, 100, 1, 0);
+        assertFalse(limited.isOutOfBudget());
+        limited.finished(null);
+        assertTrue(limited.isOutOfBudget());
+        assertNull(limited.next());
+    }
+}
@@ -0,0 +1,67 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.stmt.Statement;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestCoverageMap {
+
+    @Test
+    void identicalStatementsAreKeptApart() {
+        CompilationUnit cu = StaticJavaParser.parse("""
+                class A {
+                    void a() { System.out.println(1); }
+                    void b() { System.out.println(1); }
+                }""");
+        List<MethodDeclaration> methods = cu.findAll(MethodDeclaration.class);
+        Statement first = methods.get(0).getBody().orElseThrow().getStatement(0);
+        Statement second = methods.get(1).getBody().orElseThrow().getStatement(0);
+        assertEquals(first, second);
+
+        CoverageMap coverage = new CoverageMap();
+        LineOfCode l = coverage.add(first);
+        l.setColor(LineOfCode.BLACK);
+
+        assertSame(l, coverage.get(first));
+        assertSame(l, coverage.add(first));
+        assertTrue(coverage.isBlack(first));
+        assertFalse(coverage.contains(second));
+        assertNull(coverage.get(second));
+        assertFalse(coverage.isBlack(second));
+    }
+
+    @Test
+    void colorsAreKeptInTheMap() {
+        MethodDeclaration md = StaticJavaParser.parseMethodDeclaration("void a() { int i = 0; i++; return; }");
+        CoverageMap coverage = new CoverageMap();
+        for (Statement st : md.getBody().orElseThrow().getStatements()) {
+            assertEquals(LineOfCode.WHITE, coverage.add(st).getColor());
+        }
+        List<LineOfCode> lines = coverage.getLines();
+        lines.get(0).setColor(LineOfCode.GREY);
+        lines.get(1).setColor(LineOfCode.BLACK);
+
+        assertEquals(LineOfCode.GREY, lines.get(0).getColor());
+        assertEquals(1, coverage.count(LineOfCode.GREY));
+        assertEquals(1, coverage.count(LineOfCode.BLACK));
+        assertEquals(1, coverage.count(LineOfCode.WHITE));
+
+        lines.get(0).setColor(LineOfCode.BLACK);
+        assertEquals(0, coverage.count(LineOfCode.GREY));
+        assertEquals(2, coverage.count(LineOfCode.BLACK));
+
+        coverage.clear();
+        assertTrue(coverage.getLines().isEmpty());
+        assertEquals(0, coverage.count(LineOfCode.BLACK));
+    }
+}
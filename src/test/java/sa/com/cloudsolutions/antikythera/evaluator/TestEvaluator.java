@@ -17,9 +17,12 @@ import org.junit.jupiter.api.Test;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TestEvaluator {
@@ -75,4 +78,17 @@ class TestEvaluator {
         assertTrue(outContent.toString().contains("Hello World"));
         System.setOut(System.out);
     }
+
+    @Test
+    void scopeChainIsWorkedOutOnce() {
+        MethodCallExpr mce = StaticJavaParser.parseExpression("a.b().c.d()").asMethodCallExpr();
+        List<Expression> chain = Evaluator.scopeChain(mce);
+        assertEquals(List.of("a", "a.b()", "a.b().c"), chain.stream().map(Expression::toString).toList());
+        assertSame(chain, Evaluator.scopeChain(mce));
+
+        MethodCallExpr copy = mce.clone();
+        List<Expression> copied = Evaluator.scopeChain(copy);
+        assertNotSame(chain, copied);
+        assertTrue(copied.get(0).isDescendantOf(copy));
+    }
 }
@@ -0,0 +1,67 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestExecutionContext {
+
+    @AfterEach
+    void tearDown() {
+        ExecutionContext.setCurrent(new ExecutionContext());
+    }
+
+    @Test
+    void runTimeDelegatesToCurrentContext() {
+        ExecutionContext context = new ExecutionContext();
+        ExecutionContext.setCurrent(context);
+
+        Variable v = new Variable(1);
+        AntikytheraRunTime.push(v);
+        AntikytheraRunTime.autoWire("a.B", v);
+        assertFalse(context.isEmptyStack());
+        assertSame(v, context.getAutoWire("a.B"));
+        assertSame(v, AntikytheraRunTime.pop());
+        assertTrue(AntikytheraRunTime.isEmptyStack());
+    }
+
+    @Test
+    void evaluatorsKeepTheirContext() {
+        ExecutionContext first = new ExecutionContext();
+        ExecutionContext.setCurrent(first);
+        Evaluator evaluator = new Evaluator("a.B");
+
+        ExecutionContext.setCurrent(new ExecutionContext());
+        assertSame(first, evaluator.getContext());
+        assertSame(first, evaluator.createEvaluator("a.C").getContext());
+    }
+
+    @Test
+    void threadsHaveSeparateContexts() throws Exception {
+        AntikytheraRunTime.push(new Variable(1));
+        AntikytheraRunTime.autoWire("a.B", new Variable(2));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<ExecutionContext> other = executor.submit(() -> {
+                assertTrue(AntikytheraRunTime.isEmptyStack());
+                assertNull(AntikytheraRunTime.getAutoWire("a.B"));
+                return ExecutionContext.current();
+            });
+            assertNotSame(ExecutionContext.current(), other.get());
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, AntikytheraRunTime.pop().getValue());
+    }
+}
@@ -0,0 +1,135 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.expr.Expression;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.depsolver.ClassProcessor;
+import sa.com.cloudsolutions.antikythera.exception.AntikytheraException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestExpressionCompiler extends TestHelper {
+
+    @BeforeAll
+    public static void setup() throws IOException {
+        Settings.loadConfigMap(new File("src/test/resources/generator-field-tests.yml"));
+    }
+
+    @BeforeEach
+    public void each() throws Exception {
+        compiler = new LoopsCompiler();
+        System.setOut(new PrintStream(outContent));
+    }
+
+    @AfterEach
+    void restoreContext() {
+        ExecutionContext.setCurrent(new ExecutionContext());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"forLoop", "forLoopWithBreak", "whileLoop", "doWhileLoop", "forEachLoop",
+            "whileLoopWithBreak", "forLoopWithReturn"})
+    void compiledMatchesTreeWalking(String methodName) throws AntikytheraException, ReflectiveOperationException {
+        MethodDeclaration method = compiler.getCompilationUnit()
+                .findFirst(MethodDeclaration.class, m -> m.getNameAsString().equals(methodName)).orElseThrow();
+
+        Object walked = run(method, false);
+        String walkedOutput = outContent.toString();
+        outContent.reset();
+
+        assertEquals(walked, run(method, true));
+        assertEquals(walkedOutput, outContent.toString());
+    }
+
+    @Test
+    void compiledFormIsKeptWithTheNode() throws AntikytheraException, ReflectiveOperationException {
+        Expression expr = StaticJavaParser.parseExpression("(10 + 5) * 2");
+        ExpressionCompiler.CompiledExpression code = ExpressionCompiler.compile(expr);
+        assertSame(code, ExpressionCompiler.compile(expr));
+
+        assertEquals(30, code.execute(evaluator).getValue());
+        assertEquals(30, code.execute(evaluator).getValue());
+
+        Expression literal = StaticJavaParser.parseExpression("true");
+        Variable first = ExpressionCompiler.compile(literal).execute(evaluator);
+        assertSame(first, ExpressionCompiler.compile(literal).execute(evaluator));
+        assertThrows(IllegalStateException.class, () -> first.setValue(false));
+
+        Expression copy = expr.clone();
+        assertNotSame(code, ExpressionCompiler.compile(copy));
+    }
+
+    @Test
+    void arithmeticInALoop() throws AntikytheraException, ReflectiveOperationException {
+        MethodDeclaration method = sumMethod();
+        Object walked = run(method, false);
+        assertEquals(3996000, walked);
+        assertEquals(walked, run(method, true));
+    }
+
+    @Test
+    @Disabled("timing comparison, run by hand")
+    void benchmark() throws AntikytheraException, ReflectiveOperationException {
+        MethodDeclaration method = sumMethod();
+
+        long walking = 0;
+        long compiled = 0;
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            run(method, false);
+            walking += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            run(method, true);
+            compiled += System.nanoTime() - start;
+        }
+        assertTrue(compiled < walking,
+                String.format("Tree walking %d ms, compiled %d ms", walking / 1_000_000, compiled / 1_000_000));
+    }
+
+    private static MethodDeclaration sumMethod() {
+        return StaticJavaParser.parseMethodDeclaration("""
+                int sum() {
+                    int total = 0;
+                    for (int i = 0; i < 2000; i++) {
+                        total = total + (i * 2 - 1) / 1;
+                    }
+                    return total;
+                }""");
+    }
+
+    private Object run(MethodDeclaration method, boolean compile) throws AntikytheraException, ReflectiveOperationException {
+        ExecutionContext context = new ExecutionContext();
+        context.setCompileExpressions(compile);
+        ExecutionContext.setCurrent(context);
+        evaluator = new Evaluator("sa.com.cloudsolutions.antikythera.evaluator.Loops");
+        evaluator.setupFields(compiler.getCompilationUnit());
+        Variable v = evaluator.executeMethod(method);
+        return v == null ? null : v.getValue();
+    }
+
+    class LoopsCompiler extends ClassProcessor {
+        protected LoopsCompiler() throws IOException, AntikytheraException {
+            parse(classToPath("sa.com.cloudsolutions.antikythera.evaluator.Loops.java"));
+            compileDependencies();
+            evaluator = new Evaluator("sa.com.cloudsolutions.antikythera.evaluator.Loops");
+            evaluator.setupFields(cu);
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package sa.com.cloudsolutions.antikythera.evaluator;
 
+import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.expr.IntegerLiteralExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.stmt.BlockStmt;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import sa.com.cloudsolutions.antikythera.exception.AntikytheraException;
@@ -12,6 +16,8 @@ import java.io.PrintStream;
 
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TestLocals extends TestHelper {
@@ -29,6 +35,83 @@ public class TestLocals extends TestHelper {
         assertEquals("10,20,100\n20,30,200\n", outContent.toString());
     }
 
+    @Test
+    void identicalBlocksHaveSeparateScopes() {
+        MethodDeclaration md = StaticJavaParser.parseMethodDeclaration(
+                "void m() { { int a = 1; } { int a = 1; } }");
+        BlockStmt first = md.getBody().orElseThrow().getStatement(0).asBlockStmt();
+        BlockStmt second = md.getBody().orElseThrow().getStatement(1).asBlockStmt();
+        assertEquals(first, second);
+
+        evaluator.setLocal(first.getStatement(0), "a", new Variable(1));
+        assertEquals(1, evaluator.getLocal(first.getStatement(0), "a").getValue());
+        assertNull(evaluator.getLocal(second.getStatement(0), "a"));
+    }
+
+    @Test
+    void localsAreGivenSlots() {
+        MethodDeclaration md = StaticJavaParser.parseMethodDeclaration(
+                "void m(int a) { int b = a; { int c = b; } { int c = a; } }");
+        SlotLayout layout = SlotLayout.of(md);
+        assertSame(layout, SlotLayout.of(md));
+        assertEquals(4, layout.size());
+
+        BlockStmt body = md.getBody().orElseThrow();
+        assertEquals(0, layout.declaredSlot(body, "a"));
+        assertEquals(-1, layout.declaredSlot(body, "c"));
+        for (NameExpr name : md.findAll(NameExpr.class)) {
+            assertEquals(layout.declaredSlot(body, name.getNameAsString()), layout.slotOf(name));
+        }
+
+        evaluator.setLocal(body, "a", new Variable(7));
+        NameExpr a = md.findFirst(NameExpr.class, n -> n.getNameAsString().equals("a")).orElseThrow();
+        assertEquals(7, evaluator.getLocal(a, "a").getValue());
+    }
+
+    @Test
+    void constantsAreCopiedWhenStored() throws AntikytheraException, ReflectiveOperationException {
+        MethodDeclaration md = StaticJavaParser.parseMethodDeclaration(
+                "int m() { int a = 1; boolean b = a > 0; boolean c = !b; a++; b = false; return -a; }");
+        assertEquals(-2, evaluator.executeMethod(md).getValue());
+
+        assertEquals(Boolean.TRUE, Variable.TRUE.getValue());
+        assertEquals(Boolean.FALSE, Variable.FALSE.getValue());
+        IntegerLiteralExpr one = md.findFirst(IntegerLiteralExpr.class).orElseThrow();
+        assertEquals(1, Evaluator.evaluateLiteral(one).getValue());
+        assertSame(Evaluator.evaluateLiteral(one), Evaluator.evaluateLiteral(one));
+
+        one.setValue("3");
+        assertEquals(3, Evaluator.evaluateLiteral(one).getValue());
+    }
+
+    @Test
+    void resumeFromCheckpoint() throws AntikytheraException, ReflectiveOperationException {
+        MethodDeclaration md = StaticJavaParser.parseMethodDeclaration(
+                "int m() { int a = 1; if (a > 0) { a = a + 10; } a = a * 2; return a; }");
+        assertEquals(22, evaluator.executeMethod(md).getValue());
+
+        BlockStmt body = md.getBody().orElseThrow();
+        evaluator.getLocal(body, "a").setValue(5);
+        Evaluator.Checkpoint checkpoint = evaluator.checkpoint();
+
+        for (int i = 0; i < 2; i++) {
+            evaluator.getLocal(body, "a").setValue(9);
+            evaluator.restore(checkpoint);
+            assertEquals(5, evaluator.getLocal(body, "a").getValue());
+            assertEquals(10, evaluator.resumeMethod(md, 2).getValue());
+        }
+    }
+
+    @Test
+    void restoreLeavesTheFieldsAlone() {
+        evaluator.getFields().put("count", new Variable(1));
+        Evaluator.Checkpoint checkpoint = evaluator.checkpoint();
+
+        evaluator.getFields().put("count", new Variable(2));
+        evaluator.restore(checkpoint);
+        assertEquals(2, evaluator.getFields().get("count").getValue());
+    }
+
     class TestLocalsCompiler extends AbstractCompiler {
 
         protected TestLocalsCompiler() throws IOException {
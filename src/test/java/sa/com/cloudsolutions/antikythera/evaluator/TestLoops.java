@@ -2,8 +2,10 @@ package sa.com.cloudsolutions.antikythera.evaluator;
 
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.MethodDeclaration;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import sa.com.cloudsolutions.antikythera.configuration.Settings;
@@ -15,7 +17,9 @@ import java.io.IOException;
 import java.io.PrintStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TestLoops extends  TestHelper {
 
@@ -46,6 +50,66 @@ public class TestLoops extends  TestHelper {
         assertEquals("0\n1\n2\n3\n4\n5\n6\n7\n8\n9\n", outContent.toString());
     }
 
+    @AfterEach
+    void restoreBudget() {
+        ExecutionContext.current().setLoopBudget(null);
+    }
+
+    @Test
+    void loopIsEndedByItsBudget() throws AntikytheraException, ReflectiveOperationException {
+        ExecutionContext.current().setLoopBudget(new LoopBudget(10, 0, 0, 0, false));
+        long hits = LoopBudget.getLoopLimitHits();
+
+        evaluator.executeMethod(method("infiniteLoop"));
+        assertTrue(outContent.toString().startsWith("0\n1\n2\n3\n4\n5\n6\n7\n8\n9\n"));
+        assertFalse(outContent.toString().contains("\n10\n"));
+        assertEquals(hits + 1, LoopBudget.getLoopLimitHits());
+    }
+
+    @Test
+    void loopsShareTheMethodBudget() throws AntikytheraException, ReflectiveOperationException {
+        ExecutionContext.current().setLoopBudget(new LoopBudget(0, 4, 0, 0, false));
+        long hits = LoopBudget.getMethodLimitHits();
+
+        evaluator.executeMethod(method("forEachLoop"));
+        assertTrue(outContent.toString().startsWith("0\n1\n2\n3\n"));
+        assertFalse(outContent.toString().contains("\n4\n"));
+        assertEquals(hits + 1, LoopBudget.getMethodLimitHits());
+    }
+
+    @Test
+    void loopIsEndedByTheMethodTimeLimit() throws AntikytheraException, ReflectiveOperationException {
+        ExecutionContext.current().setLoopBudget(new LoopBudget(0, 0, 0, 50, false));
+        long hits = LoopBudget.getMethodTimeLimitHits();
+
+        evaluator.executeMethod(method("infiniteLoop"));
+        assertTrue(outContent.toString().startsWith("0\n"));
+        assertEquals(hits + 1, LoopBudget.getMethodTimeLimitHits());
+    }
+
+    @Test
+    void doLoopRespectsAnExhaustedBudget() throws AntikytheraException, ReflectiveOperationException {
+        LoopBudget budget = new LoopBudget(0, 1, 0, 0, false);
+        ExecutionContext.current().setLoopBudget(budget);
+        budget.allows(budget.start(method("doWhileLoop")));
+
+        evaluator.executeBlock(method("doWhileLoop").getBody().orElseThrow().getStatements());
+        assertFalse(outContent.toString().lines().anyMatch("0"::equals));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"forLoop", "whileLoop", "doWhileLoop", "forEachLoop", "infiniteLoop"})
+    void coverLoopsOnce(String methodName) throws AntikytheraException, ReflectiveOperationException {
+        ExecutionContext.current().setLoopBudget(new LoopBudget(0, 0, 0, 0, true));
+        evaluator.executeMethod(method(methodName));
+        assertEquals("0\n", outContent.toString());
+    }
+
+    private MethodDeclaration method(String name) {
+        return compiler.getCompilationUnit()
+                .findFirst(MethodDeclaration.class, m -> m.getNameAsString().equals(name)).orElseThrow();
+    }
+
     class TestLoopsCompiler extends ClassProcessor {
         protected TestLoopsCompiler() throws IOException, AntikytheraException {
             parse(classToPath("sa.com.cloudsolutions.antikythera.evaluator.Loops.java"));
@@ -0,0 +1,51 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestOperandStack {
+
+    @Test
+    void growsAndPopsInReverseOrder() {
+        OperandStack stack = new OperandStack();
+        for (int i = 0; i < 100; i++) {
+            stack.push(new Variable(i));
+        }
+        assertEquals(100, stack.getMaxSize());
+        for (int i = 99; i >= 0; i--) {
+            assertEquals(i, stack.pop().getValue());
+        }
+        assertTrue(stack.isEmpty());
+        assertThrows(IllegalStateException.class, stack::pop);
+    }
+
+    @Test
+    void framesProtectTheCaller() {
+        OperandStack stack = new OperandStack();
+        stack.push(new Variable("pending"));
+        stack.push(new Variable("b"));
+        stack.push(new Variable("a"));
+
+        stack.enterFrame(2);
+        assertEquals(2, stack.size());
+        assertEquals("a", stack.pop().getValue());
+        stack.push(new Variable("left over"));
+        stack.leaveFrame();
+
+        assertEquals(1, stack.size());
+        assertEquals(0, stack.getMismatches());
+
+        stack.enterFrame(3);
+        assertEquals(1, stack.getMismatches());
+        assertEquals(1, stack.size());
+        stack.pop();
+        assertTrue(stack.isEmpty());
+        assertThrows(IllegalStateException.class, stack::pop);
+        stack.leaveFrame();
+        assertTrue(stack.isEmpty());
+        assertEquals(1, stack.getMaxDepth());
+    }
+}
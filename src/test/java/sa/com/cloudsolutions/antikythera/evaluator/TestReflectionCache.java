@@ -0,0 +1,90 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestReflectionCache {
+
+    @Test
+    void invokersAreReused() throws ReflectiveOperationException {
+        Class<?>[] types = {Object.class};
+        ReflectionCache.Invoker equals = ReflectionCache.findMethod(String.class, "equals", types);
+        long hits = ReflectionCache.getHits();
+        assertSame(equals, ReflectionCache.findMethod(String.class, "equals", types));
+        assertTrue(ReflectionCache.getHits() > hits);
+        assertEquals(Object.class, types[0]);
+
+        assertEquals(true, equals.invoke("a", new Object[]{"a"}));
+        assertEquals(false, equals.invoke("a", new Object[]{"b"}));
+    }
+
+    @Test
+    void primitivesStaticsAndVoids() throws ReflectiveOperationException {
+        ReflectionCache.Invoker charAt = ReflectionCache.findMethod(String.class, "charAt", new Class<?>[]{Integer.class});
+        assertEquals('b', charAt.invoke("abc", new Object[]{1}));
+
+        ReflectionCache.Invoker valueOf = ReflectionCache.findMethod(Integer.class, "valueOf", new Class<?>[]{String.class});
+        assertEquals(42, valueOf.invoke(null, new Object[]{"42"}));
+
+        List<String> list = new ArrayList<>();
+        ReflectionCache.Invoker clear = ReflectionCache.findMethod(ArrayList.class, "clear", new Class<?>[]{});
+        list.add("x");
+        assertNull(clear.invoke(list, new Object[]{}));
+        assertTrue(list.isEmpty());
+    }
+
+    @Test
+    void resetForgetsEverything() {
+        Class<?>[] types = {Object.class};
+        ReflectionCache.Invoker equals = ReflectionCache.findMethod(String.class, "equals", types);
+        ReflectionCache.Creator creator = ReflectionCache.findConstructor(StringBuilder.class, new Class<?>[]{String.class});
+        ReflectionCache.findDeclaredClass(Map.class, "java.util.Map$Entry");
+        long misses = ReflectionCache.getMisses();
+
+        ReflectionCache.reset();
+        assertNotSame(equals, ReflectionCache.findMethod(String.class, "equals", types));
+        assertNotSame(creator, ReflectionCache.findConstructor(StringBuilder.class, new Class<?>[]{String.class}));
+        assertSame(Map.Entry.class, ReflectionCache.findDeclaredClass(Map.class, "java.util.Map$Entry"));
+        assertEquals(misses + 3, ReflectionCache.getMisses());
+    }
+
+    @Test
+    void missesAreCachedAndExceptionsWrapped() {
+        long misses = ReflectionCache.getMisses();
+        assertNull(ReflectionCache.findMethod(String.class, "noSuchMethod", new Class<?>[]{}));
+        assertNull(ReflectionCache.findMethod(String.class, "noSuchMethod", new Class<?>[]{}));
+        assertEquals(misses + 1, ReflectionCache.getMisses());
+
+        ReflectionCache.Invoker parse = ReflectionCache.findMethod(Integer.class, "parseInt", new Class<?>[]{String.class});
+        InvocationTargetException e = assertThrows(InvocationTargetException.class,
+                () -> parse.invoke(null, new Object[]{"x"}));
+        assertInstanceOf(NumberFormatException.class, e.getCause());
+    }
+
+    @Test
+    void constructorsAndDeclaredClasses() throws ReflectiveOperationException {
+        Class<?>[] types = {String.class};
+        ReflectionCache.Creator creator = ReflectionCache.findConstructor(StringBuilder.class, types);
+        assertSame(creator, ReflectionCache.findConstructor(StringBuilder.class, types));
+        assertEquals("abc", creator.newInstance(new Object[]{"abc"}).toString());
+
+        ReflectionCache.Creator sized = ReflectionCache.findConstructor(ArrayList.class, new Class<?>[]{Integer.class});
+        assertInstanceOf(ArrayList.class, sized.newInstance(new Object[]{10}));
+        assertNull(ReflectionCache.findConstructor(ArrayList.class, new Class<?>[]{Thread.class}));
+
+        assertSame(Map.Entry.class, ReflectionCache.findDeclaredClass(Map.class, "java.util.Map$Entry"));
+        assertNull(ReflectionCache.findDeclaredClass(Map.class, "java.util.Map$Missing"));
+    }
+}
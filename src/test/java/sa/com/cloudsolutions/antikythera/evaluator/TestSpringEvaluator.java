@@ -6,12 +6,16 @@ import sa.com.cloudsolutions.antikythera.configuration.Settings;
 import sa.com.cloudsolutions.antikythera.exception.AntikytheraException;
 import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
 import sa.com.cloudsolutions.antikythera.depsolver.ClassProcessor;
+import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.stmt.IfStmt;
+import com.github.javaparser.ast.stmt.Statement;
 
 import java.io.IOException;
 
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 class TestSpringEvaluator {
     @BeforeAll
@@ -37,4 +41,23 @@ class TestSpringEvaluator {
         assertNotNull(eval.returnValue);
 
     }
+
+    @Test
+    void coveredElseBlockIsNotExecutedAgain() throws Exception {
+        ClassProcessor cp = new ClassProcessor();
+        cp.compile( AbstractCompiler.classToPath("sa.com.cloudsolutions.controller.SimpleController"));
+        SpringEvaluator eval = new SpringEvaluator("sa.com.cloudsolutions.controller.SimpleController");
+
+        IfStmt ifst = StaticJavaParser.parseStatement("if (true) { } else { int a = 1; int b = 2; }").asIfStmt();
+        CoverageMap coverage = ExecutionContext.current().getCoverage();
+        coverage.add(ifst).setColor(LineOfCode.BLACK);
+        Statement first = ifst.getElseStmt().orElseThrow().asBlockStmt().getStatement(0);
+        coverage.add(first).setColor(LineOfCode.BLACK);
+
+        assertNotNull(eval.ifThenElseBlock(ifst));
+
+        Statement second = ifst.getElseStmt().orElseThrow().asBlockStmt().getStatement(1);
+        coverage.add(second).setColor(LineOfCode.BLACK);
+        assertNull(eval.ifThenElseBlock(ifst));
+    }
 }
@@ -0,0 +1,76 @@
+package sa.com.cloudsolutions.antikythera.generator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.constants.Constants;
+import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GenerationManifestTest {
+    private static final String CONTROLLER = "sa.com.cloudsolutions.controller.SimpleController";
+    private Path output;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Settings.loadConfigMap();
+        AbstractCompiler.reset();
+        AbstractCompiler.preProcess();
+        output = Files.createTempDirectory("antikythera-manifest");
+        Settings.setProperty(Constants.OUTPUT_PATH, output.toString());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Settings.loadConfigMap();
+    }
+
+    @Test
+    void disabledByDefault() throws IOException {
+        assertNull(GenerationManifest.load());
+    }
+
+    @Test
+    void unchangedControllerIsUpToDate() throws IOException {
+        Settings.setProperty(GenerationManifest.INCREMENTAL, true);
+        Path testFile = Files.createFile(output.resolve("SimpleControllerTest.java"));
+
+        GenerationManifest first = GenerationManifest.load();
+        assertNotNull(first);
+        assertFalse(first.isUpToDate(CONTROLLER, testFile));
+        first.record(CONTROLLER, Map.of());
+        first.save();
+
+        GenerationManifest second = GenerationManifest.load();
+        assertTrue(second.getChanged().isEmpty());
+        assertTrue(second.isUpToDate(CONTROLLER, testFile));
+        assertFalse(second.isUpToDate(CONTROLLER, output.resolve("Missing.java")));
+        assertFalse(second.isUpToDate("sa.com.cloudsolutions.controller.MediumController", testFile));
+    }
+
+    @Test
+    void controllersThatWereNotProcessedAreKept() throws IOException {
+        Settings.setProperty(GenerationManifest.INCREMENTAL, true);
+        Path testFile = Files.createFile(output.resolve("SimpleControllerTest.java"));
+
+        GenerationManifest first = GenerationManifest.load();
+        first.record(CONTROLLER, Map.of());
+        first.save();
+
+        GenerationManifest second = GenerationManifest.load();
+        second.save();
+
+        GenerationManifest third = GenerationManifest.load();
+        assertTrue(third.isUpToDate(CONTROLLER, testFile));
+    }
+}
@@ -11,4 +11,22 @@ class RepositoryQueryTest {
 
     private RepositoryQuery repositoryQuery;
 
+    @BeforeEach
+    void setUp() {
+        repositoryQuery = new RepositoryQuery();
+    }
+
+    @Test
+    void copyHasItsOwnArguments() {
+        repositoryQuery.getMethodParameters().add(new QueryMethodParameter(mock(Parameter.class), 0));
+        repositoryQuery.getMethodArguments().add(new QueryMethodArgument(null, 0, null));
+
+        RepositoryQuery copy = repositoryQuery.copy();
+        assertEquals(1, copy.getMethodParameters().size());
+        assertTrue(copy.getMethodArguments().isEmpty());
+
+        copy.getMethodArguments().add(new QueryMethodArgument(null, 0, null));
+        assertEquals(1, repositoryQuery.getMethodArguments().size());
+    }
+
 }
@@ -174,4 +174,19 @@ class TestTruthTable {
         assertNotNull(first);
         assertTrue(TruthTable.isTrue(v.getFirst().get(first)));
     }
+
+    @Test
+    void testWideCondition() {
+        StringBuilder condition = new StringBuilder("a0 > b0");
+        for (int i = 1; i < 10; i++) {
+            condition.append(" || a").append(i).append(" > b").append(i);
+        }
+        TruthTable tt = new TruthTable(condition.toString());
+
+        /* each pair of variables is false in 3 of its 4 combinations */
+        Map<Expression, Object> v = tt.findFirstValuesForCondition(false).orElseThrow();
+        assertEquals(20, v.size());
+        assertEquals((int) Math.pow(3, 10), tt.findValuesForCondition(false).size());
+        assertEquals((1 << 20) - (int) Math.pow(3, 10), tt.findValuesForCondition(true).size());
+    }
 }
@@ -6,9 +6,13 @@ import com.github.javaparser.ast.PackageDeclaration;
 import com.github.javaparser.ast.body.TypeDeclaration;
 import sa.com.cloudsolutions.antikythera.configuration.Settings;
 import sa.com.cloudsolutions.antikythera.constants.Constants;
+import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
+import sa.com.cloudsolutions.antikythera.evaluator.Evaluator;
+import sa.com.cloudsolutions.antikythera.evaluator.ExecutionContext;
 import com.github.javaparser.JavaParser;
 import com.github.javaparser.ParserConfiguration;
 import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.symbolsolver.JavaSymbolSolver;
 import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
 import com.github.javaparser.symbolsolver.resolution.typesolvers.JavaParserTypeSolver;
@@ -22,7 +26,9 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 
@@ -169,5 +175,141 @@ class AbstractCompilerTest {
         assertEquals("sa.com.cloudsolutions.antikythera.parser.ClassProcessorTest", result);
     }
 
+    @Test
+    void preProcessParallelMatchesSerial() throws IOException {
+        Set<String> serializable = new HashSet<>(AntikytheraRunTime.findImplementations("java.io.Serializable"));
+        assertFalse(serializable.isEmpty());
+
+        AntikytheraRunTime.resetAll();
+        Settings.setProperty("parallel_preprocess", true);
+        try {
+            AbstractCompiler.preProcess();
+            assertEquals(serializable, AntikytheraRunTime.findImplementations("java.io.Serializable"));
+            assertNotNull(AntikytheraRunTime.getCompilationUnit("sa.com.cloudsolutions.antikythera.evaluator.Employee"));
+        } finally {
+            Settings.setProperty("parallel_preprocess", false);
+        }
+    }
+
+    @Test
+    void preProcessRestoresFromCache() throws IOException {
+        String employee = "sa.com.cloudsolutions.antikythera.evaluator.Employee";
+        Set<String> serializable = new HashSet<>(AntikytheraRunTime.findImplementations("java.io.Serializable"));
+        Path cacheDir = Files.createTempDirectory("antikythera-cache");
+        Settings.setProperty(CompilationCache.CACHE_PATH, cacheDir.toString());
+        try {
+            AntikytheraRunTime.resetAll();
+            AbstractCompiler.preProcess();
+            assertTrue(Files.exists(cacheDir.resolve(CompilationCache.FILE_NAME)));
+
+            AntikytheraRunTime.resetAll();
+            long parsed = AbstractCompiler.getParseCount();
+            AbstractCompiler.preProcess();
+            assertEquals(parsed, AbstractCompiler.getParseCount());
+            assertEquals(serializable, AntikytheraRunTime.findImplementations("java.io.Serializable"));
+            assertNotNull(AntikytheraRunTime.getClassInfo(employee));
+            assertNotNull(AntikytheraRunTime.getCompilationUnit(employee));
+        } finally {
+            Settings.setProperty(CompilationCache.CACHE_PATH, null);
+        }
+    }
+
+    @Test
+    void evaluatedCompilationUnitsAreNotEvicted() throws Exception {
+        String returnValue = "sa.com.cloudsolutions.antikythera.evaluator.ReturnValue";
+        try {
+            AntikytheraRunTime.resetAll();
+            AntikytheraRunTime.setCompilationUnitLimit(1);
+            AbstractCompiler.preProcess();
+
+            Evaluator evaluator = new Evaluator(returnValue);
+            evaluator.setupFields();
+            CompilationUnit cu = AntikytheraRunTime.getCompilationUnit(returnValue);
+            MethodDeclaration md = cu.findFirst(MethodDeclaration.class,
+                    m -> m.getNameAsString().equals("returnConditionally")).orElseThrow();
+            assertEquals(10, evaluator.executeMethod(md).getValue());
+
+            assertNotNull(AntikytheraRunTime.getCompilationUnit("sa.com.cloudsolutions.antikythera.evaluator.Person"));
+            assertNotNull(AntikytheraRunTime.getCompilationUnit("sa.com.cloudsolutions.antikythera.evaluator.Employee"));
+            assertSame(cu, AntikytheraRunTime.getCompilationUnit(returnValue));
+
+            assertEquals(10, evaluator.executeMethod(md).getValue());
+        } finally {
+            AntikytheraRunTime.setCompilationUnitLimit(0);
+            AntikytheraRunTime.resetAll();
+            AbstractCompiler.preProcess();
+        }
+    }
 
+    @Test
+    void evictedCompilationUnitsAreReloaded() throws IOException {
+        String employee = "sa.com.cloudsolutions.antikythera.evaluator.Employee";
+        String person = "sa.com.cloudsolutions.antikythera.evaluator.Person";
+        try {
+            AntikytheraRunTime.resetAll();
+            AntikytheraRunTime.setCompilationUnitLimit(1);
+            AbstractCompiler.preProcess();
+            assertTrue(AntikytheraRunTime.isInterface("sa.com.cloudsolutions.antikythera.evaluator.IPerson"));
+
+            CompilationUnit first = AntikytheraRunTime.getCompilationUnit(employee);
+            assertSame(first, AntikytheraRunTime.getCompilationUnit(employee));
+            assertNotNull(AntikytheraRunTime.getCompilationUnit(person));
+
+            CompilationUnit reloaded = AntikytheraRunTime.getCompilationUnit(employee);
+            assertNotSame(first, reloaded);
+            assertEquals(first, reloaded);
+        } finally {
+            AntikytheraRunTime.setCompilationUnitLimit(0);
+            AntikytheraRunTime.resetAll();
+            AbstractCompiler.preProcess();
+        }
+    }
+
+    @Test
+    void releasedCompilationUnitsCanBeEvicted() throws IOException {
+        String employee = "sa.com.cloudsolutions.antikythera.evaluator.Employee";
+        String person = "sa.com.cloudsolutions.antikythera.evaluator.Person";
+        try {
+            AntikytheraRunTime.resetAll();
+            AntikytheraRunTime.setCompilationUnitLimit(1);
+            AbstractCompiler.preProcess();
+
+            ExecutionContext first = new ExecutionContext();
+            ExecutionContext second = new ExecutionContext();
+            CompilationUnit cu = first.pin(employee);
+            assertSame(cu, second.pin(employee));
+
+            first.unpinAll();
+            assertNotNull(AntikytheraRunTime.getCompilationUnit(person));
+            assertSame(cu, AntikytheraRunTime.getCompilationUnit(employee));
+
+            second.unpinAll();
+            assertSame(cu, AntikytheraRunTime.getCompilationUnit(employee));
+            assertNotNull(AntikytheraRunTime.getCompilationUnit(person));
+            assertNotSame(cu, AntikytheraRunTime.getCompilationUnit(employee));
+        } finally {
+            AntikytheraRunTime.setCompilationUnitLimit(0);
+            AntikytheraRunTime.resetAll();
+            AbstractCompiler.preProcess();
+        }
+    }
+
+    @Test
+    void resolutionIsCachedUntilImportsChange() {
+        CompilationUnit cu = StaticJavaParser.parse("""
+                package sa.com.cloudsolutions.antikythera.evaluator;
+                import java.util.List;
+                public class Cached { }
+                """);
+        assertEquals("java.util.List", AbstractCompiler.findFullyQualifiedName(cu, "List"));
+
+        long hits = ResolutionCache.getHits();
+        assertEquals("java.util.List", AbstractCompiler.findFullyQualifiedName(cu, "List"));
+        assertNull(AbstractCompiler.findImport(cu, "Map"));
+        assertNull(AbstractCompiler.findImport(cu, "Map"));
+        assertTrue(ResolutionCache.getHits() >= hits + 2);
+
+        cu.addImport("java.util.Map");
+        assertNotNull(AbstractCompiler.findImport(cu, "Map"));
+    }
 }
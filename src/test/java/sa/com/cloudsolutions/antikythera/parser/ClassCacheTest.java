@@ -0,0 +1,41 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClassCacheTest {
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        Settings.loadConfigMap();
+        AbstractCompiler.reset();
+    }
+
+    @Test
+    void classesAreLoadedOnce() throws ClassNotFoundException {
+        long loads = ClassCache.getLoads();
+        assertSame(String.class, ClassCache.forName("java.lang.String"));
+        assertSame(String.class, ClassCache.forName("java.lang.String"));
+        assertSame(String.class, AbstractCompiler.loadClass("java.lang.String"));
+        assertSame(String.class, AbstractCompiler.loadClass("java.lang.String"));
+        assertTrue(ClassCache.getLoads() - loads <= 2);
+    }
+
+    @Test
+    void missingClassesAreRemembered() {
+        long failures = ClassCache.getFailures();
+        assertTrue(ClassCache.find("com.example.DoesNotExist").isEmpty());
+        assertTrue(ClassCache.findAnywhere("com.example.DoesNotExist").isEmpty());
+        assertThrows(ClassNotFoundException.class, () -> ClassCache.forName("com.example.DoesNotExist"));
+        assertThrows(ClassNotFoundException.class, () -> AbstractCompiler.loadClass("com.example.DoesNotExist"));
+        assertEquals(failures + 2, ClassCache.getFailures());
+    }
+}
@@ -0,0 +1,89 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import com.github.javaparser.ast.CompilationUnit;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HeaderScannerTest {
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        Settings.loadConfigMap(new File("src/test/resources/generator-field-tests.yml"));
+        AbstractCompiler.reset();
+    }
+
+    @Test
+    void stripRemovesTypeBodies() {
+        String source = """
+                package a.b;
+                import java.util.List;
+                // a comment with a { brace
+                @SuppressWarnings({"unchecked", "rawtypes"})
+                @RequestMapping("/{id}")
+                public class Foo extends Bar implements Baz {
+                    private String s = "}";
+                    private char c = '{';
+                    /* } */
+                    void m() { if (true) { } }
+                    String t = \"""
+                        }
+                        \""";
+                }
+                interface Other { void x(); }
+                """;
+        String stripped = HeaderScanner.strip(source);
+        assertTrue(stripped.contains("public class Foo extends Bar implements Baz {}"));
+        assertTrue(stripped.contains("interface Other {}"));
+        assertTrue(stripped.contains("@SuppressWarnings({\"unchecked\", \"rawtypes\"})"));
+        assertTrue(stripped.contains("@RequestMapping(\"/{id}\")"));
+        assertFalse(stripped.contains("void m()"));
+    }
+
+    @Test
+    void scanKeepsDeclarations() throws IOException {
+        Optional<CompilationUnit> cu = HeaderScanner.scan("sa/com/cloudsolutions/antikythera/evaluator/Employee.java");
+        assertTrue(cu.isPresent());
+        assertFalse(cu.get().getImports().isEmpty());
+        assertEquals(1, cu.get().getTypes().size());
+        assertTrue(cu.get().getType(0).getMembers().isEmpty());
+    }
+
+    @Test
+    void headerIndexMatchesFullParse() throws IOException {
+        AntikytheraRunTime.resetAll();
+        AbstractCompiler.preProcess();
+        Set<String> serializable = new HashSet<>(AntikytheraRunTime.findImplementations("java.io.Serializable"));
+        assertFalse(serializable.isEmpty());
+
+        AntikytheraRunTime.resetAll();
+        Settings.setProperty("header_index", true);
+        try {
+            long parsed = AbstractCompiler.getParseCount();
+            AbstractCompiler.preProcess();
+            assertEquals(parsed, AbstractCompiler.getParseCount());
+            assertEquals(serializable, AntikytheraRunTime.findImplementations("java.io.Serializable"));
+            assertTrue(AntikytheraRunTime.isInterface("sa.com.cloudsolutions.antikythera.evaluator.IPerson"));
+
+            CompilationUnit employee = AntikytheraRunTime.getCompilationUnit("sa.com.cloudsolutions.antikythera.evaluator.Employee");
+            assertNotNull(employee);
+            assertFalse(employee.getType(0).getMembers().isEmpty());
+        } finally {
+            Settings.setProperty("header_index", false);
+            AntikytheraRunTime.resetAll();
+            AbstractCompiler.preProcess();
+        }
+    }
+}
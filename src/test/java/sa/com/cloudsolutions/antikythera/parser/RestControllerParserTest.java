@@ -4,10 +4,14 @@ import sa.com.cloudsolutions.antikythera.configuration.Settings;
 import sa.com.cloudsolutions.antikythera.constants.Constants;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import sa.com.cloudsolutions.antikythera.evaluator.BranchScheduler;
+import sa.com.cloudsolutions.antikythera.evaluator.SpringEvaluator;
 import sa.com.cloudsolutions.antikythera.exception.EvaluatorException;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -34,4 +38,79 @@ class RestControllerParserTest {
         assertTrue(srcDirectory.exists() && srcDirectory.isDirectory());
         assertTrue(testDirectory.exists() && testDirectory.isDirectory());
     }
+
+    @Test
+    void start_processesControllersConcurrently() throws IOException, EvaluatorException {
+        Settings.setProperty(RestControllerParser.PARALLEL_CONTROLLERS, 2);
+        try {
+            File folder = Paths.get(Settings.getBasePath(), "sa/com/cloudsolutions/controller").toFile();
+            int before = RestControllerParser.getStats().getControllers();
+            new RestControllerParser(folder).start();
+
+            assertEquals(before + 3, RestControllerParser.getStats().getControllers());
+            for (String name : new String[] {"SimpleController", "MediumController", "ComplexController"}) {
+                assertTrue(new File(outputPath + "/src/test/java/sa/com/cloudsolutions/controller/" + name + "Test.java").exists());
+            }
+        } finally {
+            Settings.setProperty(RestControllerParser.PARALLEL_CONTROLLERS, 2);
+        }
+    }
+
+    @Test
+    void start_evaluatesMethodsConcurrently() throws IOException, EvaluatorException {
+        File folder = Paths.get(Settings.getBasePath(), "sa/com/cloudsolutions/controller").toFile();
+        String[] names = {"SimpleController", "MediumController", "ComplexController"};
+
+        Settings.setProperty(RestControllerParser.PARALLEL_CONTROLLERS, 1);
+        new RestControllerParser(folder).start();
+        String[] sequential = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            sequential[i] = Files.readString(Paths.get(outputPath, "src/test/java/sa/com/cloudsolutions/controller", names[i] + "Test.java"));
+        }
+
+        Settings.setProperty(RestControllerParser.PARALLEL_METHODS, 4);
+        try {
+            new RestControllerParser(folder).start();
+            for (int i = 0; i < names.length; i++) {
+                assertEquals(sequential[i], Files.readString(
+                        Paths.get(outputPath, "src/test/java/sa/com/cloudsolutions/controller", names[i] + "Test.java")));
+            }
+        } finally {
+            Settings.setProperty(RestControllerParser.PARALLEL_METHODS, 1);
+        }
+    }
+
+    @Test
+    void start_replaysBranchesLikeAFullEvaluation() throws IOException, EvaluatorException {
+        File folder = Paths.get(Settings.getBasePath(), "sa/com/cloudsolutions/replay").toFile();
+        Path generated = Paths.get(outputPath, "src/test/java/sa/com/cloudsolutions/replay/BranchingControllerTest.java");
+
+        new RestControllerParser(folder).start();
+        String full = Files.readString(generated);
+
+        Settings.setProperty(SpringEvaluator.REPLAY_BRANCHES, true);
+        try {
+            new RestControllerParser(folder).start();
+            assertEquals(full, Files.readString(generated));
+        } finally {
+            Settings.setProperty(SpringEvaluator.REPLAY_BRANCHES, false);
+        }
+    }
+
+    @Test
+    void start_takesScheduledBranches() throws IOException, EvaluatorException {
+        File folder = Paths.get(Settings.getBasePath(), "sa/com/cloudsolutions/replay").toFile();
+        Path generated = Paths.get(outputPath, "src/test/java/sa/com/cloudsolutions/replay/BranchingControllerTest.java");
+
+        new RestControllerParser(folder).start();
+        assertFalse(Files.readString(generated).contains("assertEquals(202"));
+
+        Settings.setProperty(BranchScheduler.BRANCH_COVERAGE, 100);
+        try {
+            new RestControllerParser(folder).start();
+            assertTrue(Files.readString(generated).contains("assertEquals(202"));
+        } finally {
+            Settings.setProperty(BranchScheduler.BRANCH_COVERAGE, 0);
+        }
+    }
 }
@@ -0,0 +1,37 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SourceIndexTest {
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        Settings.loadConfigMap(new File("src/test/resources/generator-field-tests.yml"));
+        AbstractCompiler.reset();
+    }
+
+    @Test
+    void indexMatchesFileSystem() {
+        String employee = "sa/com/cloudsolutions/antikythera/evaluator/Employee.java";
+        assertTrue(SourceIndex.exists(employee));
+        assertFalse(SourceIndex.exists("sa/com/cloudsolutions/antikythera/evaluator/Missing.java"));
+        assertTrue(SourceIndex.getSources().contains(employee));
+    }
+
+    @Test
+    void findClassesInPackage() {
+        List<String> classes = SourceIndex.findClassesInPackage("sa.com.cloudsolutions.antikythera.evaluator");
+        assertTrue(classes.contains("sa.com.cloudsolutions.antikythera.evaluator.Employee"));
+        assertFalse(classes.stream().anyMatch(c -> c.startsWith("sa.com.cloudsolutions.antikythera.evaluator.")
+                && c.substring("sa.com.cloudsolutions.antikythera.evaluator.".length()).contains(".")));
+    }
+}
@@ -24,7 +24,13 @@ import sa.com.cloudsolutions.antikythera.generator.RepositoryQuery;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Field;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
 import java.util.Map;
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -101,4 +107,41 @@ class TestRepositoryParser {
         MethodDeclaration md = parser.findMethodDeclaration(new MethodCallExpr("findAll"));
         assertNotNull(parser.get(md));
     }
+
+    @Test
+    void eachQueryHasItsOwnRows() throws IOException, ReflectiveOperationException, SQLException {
+        AntikytheraRunTime.resetAll();
+        AbstractCompiler.preProcess();
+        parser.compile(AbstractCompiler.classToPath("sa.com.cloudsolutions.repository.PersonRepository"));
+        parser.process();
+        MethodDeclaration md = parser.findMethodDeclaration(new MethodCallExpr("findAll"));
+
+        CachedRowSet rows = RowSetProvider.newFactory().createCachedRowSet();
+        RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+        metaData.setColumnCount(1);
+        metaData.setColumnName(1, "id");
+        metaData.setColumnType(1, Types.INTEGER);
+        rows.setMetaData(metaData);
+        for (int i = 1; i <= 2; i++) {
+            rows.moveToInsertRow();
+            rows.updateInt(1, i);
+            rows.insertRow();
+        }
+        rows.moveToCurrentRow();
+        rows.beforeFirst();
+
+        Field cache = RepositoryParser.class.getDeclaredField("cache");
+        cache.setAccessible(true);
+        ((Map<MethodDeclaration, CachedRowSet>) cache.get(parser)).put(md, rows);
+
+        ResultSet first = parser.executeQuery(parser.get(md).copy());
+        ResultSet second = parser.executeQuery(parser.get(md).copy());
+        assertTrue(first.next());
+        assertTrue(first.next());
+        assertTrue(second.next());
+        assertEquals(1, second.getInt("id"));
+        first.close();
+        assertTrue(second.next());
+        assertTrue(parser.executeQuery(parser.get(md).copy()).next());
+    }
 }
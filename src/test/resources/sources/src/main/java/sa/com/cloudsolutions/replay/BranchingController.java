@@ -0,0 +1,41 @@
+package sa.com.cloudsolutions.replay;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import sa.com.cloudsolutions.model.Person;
+
+@RestController
+@RequestMapping({"/branching"})
+public class BranchingController {
+
+    @RequestMapping(method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Person> get(@RequestParam("id") Long id) {
+        Person person = new Person();
+        if (person.getName() == null) {
+            person.setAddress("unknown");
+            return new ResponseEntity<>(person, HttpStatus.BAD_REQUEST);
+        }
+        if (person.getAddress() == null) {
+            return new ResponseEntity<>(person, HttpStatus.CREATED);
+        }
+        return new ResponseEntity<>(person, HttpStatus.OK);
+    }
+
+    @RequestMapping(value = "/find", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Person> find(@RequestParam("id") Long id) {
+        Person person = new Person();
+        if (person.getName() == null) {
+            if (person.getAddress() == null) {
+                return new ResponseEntity<>(person, HttpStatus.NOT_FOUND);
+            }
+            return new ResponseEntity<>(person, HttpStatus.ACCEPTED);
+        }
+        return new ResponseEntity<>(person, HttpStatus.OK);
+    }
+}